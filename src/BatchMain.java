@@ -0,0 +1,406 @@
+import field.ChunkedField;
+import field.DoubleBufferedField;
+import field.Field;
+import field.GridField;
+import field.OffHeapField;
+import infector.Epidemic;
+import simulator.Checkpoint;
+import simulator.AllocationMeter;
+import simulator.CheckpointWriter;
+import simulator.EnsembleRunner;
+import simulator.EnsembleStatistics;
+import simulator.EventJournal;
+import simulator.PopulationLog;
+import simulator.SeriesExporter;
+import simulator.SimulationEngine;
+import simulator.SimulationServer;
+import utils.Randomizer;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Runs the simulation without a display, for batch jobs. The population
+ * of each species is written as comma separated values, and the time
+ * taken is reported at the end.
+ *
+ * With --runs the simulation is instead run from that many seeds at once,
+ * counting up from the given seed, and the statistics of the ensemble
+ * (mean, variance and quantiles of each species at each step) are written.
+ *
+ * Options (all optional):
+ *   --depth N     depth of the field (default 80)
+ *   --width N     width of the field (default 120)
+ *   --steps N     the step to run to (default 4000)
+ *   --seed N      seed of the shared random generator
+ *   --output F    file to write the populations to, or - for standard output (default)
+ *   --every N     write the populations every N steps (default 1)
+ *   --field T     storage of the field: grid (default), chunked, offheap or buffered
+ *   --threads N   act in parallel stripes on N threads; 0 acts in sequence (default).
+ *                 With --runs, the number of runs executed at once (default: all processors)
+ *   --runs N      run an ensemble of N simulations
+ *   --serve P     serve the simulation over HTTP on local port P instead of
+ *                 running it straight away (see SimulationServer)
+ *   --checkpoint F  save a checkpoint to file F at the end of the run
+ *   --checkpoint-every N  also save one every N steps, in the background
+ *   --restore F   start from the checkpoint in file F instead of a fresh field
+ *   --journal D   record every birth, move, infection and death in directory D
+ *                 (see EventJournal; replay with ReplayMain)
+ *   --series F    record the population, infected animals and weather at every
+ *                 step in the columnar file F (see SeriesExporter; convert with SeriesCsv)
+ *   --alloc-limit N  measure the memory allocated a step, after the first
+ *                 ALLOCATION_WARM_UP steps, and fail with exit status 2 if it
+ *                 is over N bytes (best with --quiet)
+ *   --regional-weather  let storms drift over the field instead of raining
+ *                 on all of it at once (see Environment)
+ *   --plant-layer keep the plants as a plant layer rather than as organisms
+ *                 (grid fields only; not with --runs or --journal)
+ *   --epidemic M  the course of the disease: si (default), sir or seir
+ *                 (see Epidemic; not with --runs)
+ *   --verify-restore N  keep a checkpoint of the run after step N, restore
+ *                 it into a second simulation of a fresh field when the run
+ *                 is over, run that to the same step and fail with exit
+ *                 status 2 unless both end the same (not with --runs or --serve)
+ *   --quiet       do not write the populations
+ */
+public class BatchMain {
+    private static final String USAGE = "usage: BatchMain [--depth N] [--width N] [--steps N] [--seed N]"
+            + " [--output FILE|-] [--every N] [--field grid|chunked|offheap|buffered] [--threads N] [--runs N] [--serve PORT]"
+            + " [--checkpoint FILE] [--checkpoint-every N] [--restore FILE] [--journal DIR] [--series FILE] [--alloc-limit BYTES] [--regional-weather] [--plant-layer]"
+            + " [--epidemic si|sir|seir] [--verify-restore N]"
+            + " [--quiet]";
+    // The steps left out of --alloc-limit, while the simulation settles.
+    private static final int ALLOCATION_WARM_UP = 100;
+    private static final List<String> FIELD_TYPES = List.of("grid", "chunked", "offheap", "buffered");
+
+    /**
+     * Run a simulation as described by the arguments.
+     * @param args The command line options.
+     */
+    public static void main(String[] args) {
+        int depth = 80;
+        int width = 120;
+        int steps = 4000;
+        int every = 1;
+        int threads = 0;
+        int runs = 0;
+        int port = -1;
+        int checkpointEvery = 0;
+        Path checkpoint = null;
+        Path restore = null;
+        Path journalDirectory = null;
+        Path series = null;
+        long allocationLimit = -1;
+        int verifyStep = -1;
+        Long seed = null;
+        String output = "-";
+        String fieldType = "grid";
+        boolean regionalWeather = false;
+        boolean plantLayer = false;
+        Epidemic.Model epidemicModel = Epidemic.Model.SI;
+        boolean quiet = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--depth": depth = Integer.parseInt(args[++i]); break;
+                    case "--width": width = Integer.parseInt(args[++i]); break;
+                    case "--steps": steps = Integer.parseInt(args[++i]); break;
+                    case "--seed": seed = Long.parseLong(args[++i]); break;
+                    case "--output": output = args[++i]; break;
+                    case "--every": every = Integer.parseInt(args[++i]); break;
+                    case "--field": fieldType = args[++i]; break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--runs": runs = Integer.parseInt(args[++i]); break;
+                    case "--serve": port = Integer.parseInt(args[++i]); break;
+                    case "--checkpoint": checkpoint = Paths.get(args[++i]); break;
+                    case "--checkpoint-every": checkpointEvery = Integer.parseInt(args[++i]); break;
+                    case "--restore": restore = Paths.get(args[++i]); break;
+                    case "--journal": journalDirectory = Paths.get(args[++i]); break;
+                    case "--series": series = Paths.get(args[++i]); break;
+                    case "--alloc-limit": allocationLimit = Long.parseLong(args[++i]); break;
+                    case "--verify-restore": verifyStep = Integer.parseInt(args[++i]); break;
+                    case "--regional-weather": regionalWeather = true; break;
+                    case "--plant-layer": plantLayer = true; break;
+                    case "--epidemic": epidemicModel = parseEpidemicModel(args[++i]); break;
+                    case "--quiet": quiet = true; break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (depth <= 0 || width <= 0 || steps < 0 || every <= 0 || threads < 0 || runs < 0
+                    || checkpointEvery < 0) {
+                throw new IllegalArgumentException("sizes and counts must be positive");
+            }
+            if (!FIELD_TYPES.contains(fieldType)) {
+                throw new IllegalArgumentException("unknown field type " + fieldType);
+            }
+            if (checkpointEvery > 0 && checkpoint == null) {
+                throw new IllegalArgumentException("--checkpoint-every needs --checkpoint");
+            }
+            if (plantLayer && (runs > 0 || journalDirectory != null)) {
+                throw new IllegalArgumentException("--plant-layer cannot be used with --runs or --journal");
+            }
+            if (epidemicModel != Epidemic.Model.SI && runs > 0) {
+                throw new IllegalArgumentException("--epidemic cannot be used with --runs");
+            }
+            if (verifyStep >= 0 && (runs > 0 || port >= 0)) {
+                throw new IllegalArgumentException("--verify-restore cannot be used with --runs or --serve");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e.getMessage() == null ? "missing value" : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        if (runs > 0) {
+            runEnsemble(fieldType, depth, width, regionalWeather, steps, runs, seed == null ? 1 : seed,
+                    threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                    quiet ? null : output);
+            return;
+        }
+        if (seed != null) {
+            Randomizer.reset(seed);
+        }
+        Field field = createField(fieldType, depth, width, regionalWeather);
+        long start = System.nanoTime();
+        SimulationEngine engine = null;
+        try {
+            engine = new SimulationEngine(field, plantLayer);
+            engine.setParallelism(threads);
+            engine.setEpidemicModel(epidemicModel);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        if (restore != null) {
+            try {
+                engine.restore(Checkpoint.read(restore));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("cannot restore " + restore + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (port >= 0) {
+            serve(engine, port);
+            return;
+        }
+        PrintStream out = null;
+        if (!quiet) {
+            out = openOutput(output);
+            engine.addObserver(new PopulationLog(out, every));
+        }
+        EventJournal journal = null;
+        if (journalDirectory != null) {
+            try {
+                journal = new EventJournal(journalDirectory);
+                journal.attach(engine);
+            } catch (IOException e) {
+                System.err.println("cannot journal to " + journalDirectory + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        SeriesExporter exporter = null;
+        if (series != null) {
+            try {
+                exporter = new SeriesExporter(series);
+                engine.addObserver(exporter);
+            } catch (IOException e) {
+                System.err.println("cannot write a series to " + series + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        CheckpointWriter checkpoints = null;
+        if (checkpointEvery > 0) {
+            checkpoints = new CheckpointWriter(engine, checkpoint, checkpointEvery);
+            engine.addObserver(checkpoints);
+        }
+        AllocationMeter meter = null;
+        if (allocationLimit >= 0) {
+            try {
+                meter = new AllocationMeter(ALLOCATION_WARM_UP);
+                engine.addObserver(meter);
+            } catch (UnsupportedOperationException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+        int firstStep = engine.getStep();
+        Checkpoint verifyFrom = null;
+        if (verifyStep >= 0) {
+            engine.simulate(verifyStep - firstStep);
+            verifyFrom = engine.checkpoint();
+        }
+        engine.simulate(steps - engine.getStep());
+        long bytesPerStep = meter == null ? -1 : meter.getBytesPerStep();
+        try {
+            if (checkpoints != null) {
+                checkpoints.close();
+            }
+            if (checkpoint != null) {
+                engine.checkpoint().write(checkpoint);
+            }
+        } catch (IOException e) {
+            System.err.println("cannot save a checkpoint to " + checkpoint + ": " + e.getMessage());
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("cannot write the journal to " + journalDirectory + ": " + e.getMessage());
+            }
+        }
+        if (exporter != null) {
+            try {
+                exporter.close();
+            } catch (IOException e) {
+                System.err.println("cannot write a series to " + series + ": " + e.getMessage());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (out != null) {
+            out.flush();
+            if (out != System.out) {
+                out.close();
+            }
+        }
+
+        System.err.printf("%d steps of a %dx%d field in %.3f s (%.1f steps/s), %d organisms left%n",
+                engine.getStep() - firstStep, depth, width, elapsed / 1e9,
+                (engine.getStep() - firstStep) / (elapsed / 1e9), engine.getOrganismCount());
+        if (verifyFrom != null) {
+            boolean same = false;
+            try {
+                same = resumesAlike(verifyFrom, engine, fieldType, regionalWeather, plantLayer, threads,
+                        epidemicModel);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.err.println("cannot verify the restore: " + e.getMessage());
+            }
+            System.err.println(same ? "restored from step " + verifyFrom.getStep() + ", ended the same"
+                    : "restored from step " + verifyFrom.getStep() + ", ended differently");
+            if (!same) {
+                System.exit(2);
+            }
+        }
+        if (meter != null) {
+            if (bytesPerStep < 0) {
+                System.err.println("too few steps to measure allocation after a warm-up of "
+                        + ALLOCATION_WARM_UP);
+                System.exit(2);
+            }
+            System.err.printf("%d bytes allocated a step (limit %d)%n", bytesPerStep, allocationLimit);
+            if (bytesPerStep > allocationLimit) {
+                System.exit(2);
+            }
+        }
+    }
+
+    /**
+     * Restore a checkpoint into a simulation of a fresh field set up like
+     * the one it was taken from, run it to the step that simulation has
+     * reached and compare the two.
+     * @return true if the restored simulation ends as the original did.
+     */
+    private static boolean resumesAlike(Checkpoint checkpoint, SimulationEngine original, String fieldType,
+                                        boolean regionalWeather, boolean plantLayer, int threads,
+                                        Epidemic.Model epidemicModel) {
+        Field field = createField(fieldType, checkpoint.getDepth(), checkpoint.getWidth(), regionalWeather);
+        SimulationEngine restored = new SimulationEngine(field, plantLayer);
+        restored.setParallelism(threads);
+        restored.setEpidemicModel(epidemicModel);
+        restored.restore(checkpoint);
+        restored.simulate(original.getStep() - restored.getStep());
+        restored.setParallelism(0);
+        return restored.checkpoint().sameWorldAs(original.checkpoint());
+    }
+
+    /**
+     * Serve a simulation over HTTP until the process is stopped.
+     */
+    private static void serve(SimulationEngine engine, int port) {
+        try {
+            int bound = new SimulationServer(engine).start(port);
+            System.err.println("serving the simulation on http://localhost:" + bound + "/");
+        } catch (IOException e) {
+            System.err.println("cannot serve on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run an ensemble of simulations and write their statistics.
+     */
+    private static void runEnsemble(String fieldType, int depth, int width, boolean regionalWeather, int steps,
+                                    int runs, long firstSeed, int parallelism, String output) {
+        long[] seeds = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            seeds[run] = firstSeed + run;
+        }
+        long start = System.nanoTime();
+        EnsembleRunner runner = new EnsembleRunner(() -> createField(fieldType, depth, width, regionalWeather),
+                steps, parallelism);
+        EnsembleStatistics statistics = runner.run(seeds);
+        runner.shutdown();
+        long elapsed = System.nanoTime() - start;
+        if (output != null) {
+            PrintStream out = openOutput(output);
+            statistics.write(out);
+            out.flush();
+            if (out != System.out) {
+                out.close();
+            }
+        }
+
+        System.err.printf("%d runs of %d steps of a %dx%d field on %d threads in %.3f s (%.2f runs/s)%n",
+                runs, steps, depth, width, parallelism, elapsed / 1e9, runs / (elapsed / 1e9));
+    }
+
+    /**
+     * Return the model of the course of a disease named on the command line.
+     * @param name The name, in any case.
+     * @return The model.
+     * @throws IllegalArgumentException If there is no such model.
+     */
+    private static Epidemic.Model parseEpidemicModel(String name) {
+        for (Epidemic.Model model : Epidemic.Model.values()) {
+            if (model.name().equalsIgnoreCase(name)) {
+                return model;
+            }
+        }
+        throw new IllegalArgumentException("unknown epidemic model " + name);
+    }
+
+    /**
+     * Create a field with the given storage and weather.
+     */
+    private static Field createField(String type, int depth, int width, boolean regionalWeather) {
+        Field field;
+        switch (type) {
+            case "grid": field = new GridField(depth, width); break;
+            case "chunked": field = new ChunkedField(depth, width); break;
+            case "offheap": field = new OffHeapField(depth, width); break;
+            case "buffered": field = new DoubleBufferedField(depth, width); break;
+            default: throw new IllegalArgumentException("unknown field type " + type);
+        }
+        field.getEnvironment().setRegional(regionalWeather);
+        return field;
+    }
+
+    /**
+     * Open the stream the populations are written to.
+     */
+    private static PrintStream openOutput(String output) {
+        if (output.equals("-")) {
+            return System.out;
+        }
+        try {
+            return new PrintStream(output);
+        } catch (FileNotFoundException e) {
+            System.err.println("cannot write to " + output + ": " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+}
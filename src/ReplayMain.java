@@ -0,0 +1,93 @@
+import animals.Organism;
+import field.Field;
+import field.GridField;
+import field.SpeciesRegistry;
+import simulator.JournalReplay;
+import simulator.SimulationEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Rebuilds the field of a journaled run (see BatchMain --journal) as it
+ * was after a given step, without running the model, and writes the
+ * population of each species. Optionally the field itself is written,
+ * one character per cell: the first letter of the species, in lower
+ * case if infected, or '.' for an empty cell.
+ *
+ * Options:
+ *   --journal D   the journal directory (required)
+ *   --step N      the step to rebuild (default: the last in the journal)
+ *   --grid        also write the field
+ */
+public class ReplayMain {
+    private static final String USAGE = "usage: ReplayMain --journal DIR [--step N] [--grid]";
+
+    /**
+     * Replay a journal as described by the arguments.
+     * @param args The command line options.
+     */
+    public static void main(String[] args) {
+        Path directory = null;
+        int step = Integer.MAX_VALUE;
+        boolean grid = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--journal": directory = Paths.get(args[++i]); break;
+                    case "--step": step = Integer.parseInt(args[++i]); break;
+                    case "--grid": grid = true; break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (directory == null) {
+                throw new IllegalArgumentException("--journal is required");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e.getMessage() == null ? "missing value" : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        // Fix the species codes the journal was written with.
+        int species = SimulationEngine.getSpeciesCount();
+        long start = System.nanoTime();
+        Field field = null;
+        int reached = 0;
+        try {
+            JournalReplay replay = JournalReplay.of(directory);
+            field = new GridField(replay.getBase().getDepth(), replay.getBase().getWidth());
+            reached = replay.replay(step, field);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("cannot replay " + directory + ": " + e.getMessage());
+            System.exit(1);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.print("step " + reached);
+        for (int code = 1; code <= species; code++) {
+            System.out.print(" " + SpeciesRegistry.classOf(code).getSimpleName() + "=" + field.getPopulation(code));
+        }
+        System.out.println();
+        if (grid) {
+            StringBuilder row = new StringBuilder(field.getWidth());
+            for (int r = 0; r < field.getDepth(); r++) {
+                row.setLength(0);
+                for (int c = 0; c < field.getWidth(); c++) {
+                    long index = field.indexOf(r, c);
+                    int code = field.getSpeciesAt(index);
+                    if (code == SpeciesRegistry.EMPTY) {
+                        row.append('.');
+                    } else {
+                        char letter = SpeciesRegistry.classOf(code).getSimpleName().charAt(0);
+                        boolean infected = ((Organism) field.getObjectAt(index)).isInfected();
+                        row.append(infected ? Character.toLowerCase(letter) : letter);
+                    }
+                }
+                System.out.println(row);
+            }
+        }
+        System.err.printf("rebuilt step %d in %.3f s%n", reached, elapsed / 1e9);
+    }
+}
@@ -0,0 +1,44 @@
+import simulator.SeriesReader;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+
+/**
+ * Converts a series file written by BatchMain --series (see
+ * SeriesExporter) into comma separated values: a line for each step with
+ * the step, whether it was night and raining, and the number of animals
+ * and of infected animals of each species.
+ *
+ * Usage: SeriesCsv SERIES [CSV]. Without CSV the values go to standard output.
+ */
+public class SeriesCsv {
+    private static final String USAGE = "usage: SeriesCsv SERIES [CSV]";
+
+    /**
+     * Convert a series file as described by the arguments.
+     * @param args The series file, and optionally the file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            SeriesReader reader = new SeriesReader(Paths.get(args[0]));
+            PrintStream out = args.length == 2
+                    ? new PrintStream(new BufferedOutputStream(new FileOutputStream(args[1])), false)
+                    : System.out;
+            reader.writeCsv(out);
+            out.flush();
+            if (out != System.out) {
+                out.close();
+            }
+        } catch (IOException e) {
+            System.err.println("cannot convert " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package animals;
+
+/**
+ * The ways an organism can die.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public enum DeathCause {
+    // It grew older than its species lives.
+    AGE,
+    // It ran out of food.
+    HUNGER,
+    // It had nowhere to move to.
+    OVERCROWDING,
+    // It was eaten.
+    EATEN,
+    // It was born into a cell another organism won (see field.Occupant).
+    DISPLACED
+}
@@ -1,7 +1,7 @@
 package animals;
 
 import field.Field;
-import field.Location;
+import field.SpeciesRegistry;
 
 import java.util.List;
 
@@ -15,8 +15,13 @@ import java.util.List;
  * @version 2020.02.13
  */
 public abstract class Eater extends Organism {
+    // The food level of a newborn.
+    private static final int INITIAL_FOOD_LEVEL = 40;
 
     private int foodLevel;
+    // The cell of the latest meal and the food level before it.
+    private long mealCell;
+    private int foodBeforeMeal;
 
     /**
      * Create a new creature at location in field.
@@ -24,7 +29,7 @@ public abstract class Eater extends Organism {
      *
      * @param isRandomAge         If the age should be randomly assigned
      * @param field               The field currently occupied.
-     * @param location            The location within the field.
+     * @param cell                The index of the cell within the field.
      * @param isMale              SHows if the predator is male or not
      * @param breedingProbability The probability to breed
      * @param maxLitterSize       The maximum number of children
@@ -35,15 +40,31 @@ public abstract class Eater extends Organism {
     public Eater(
             boolean isRandomAge,
             Field field,
-            Location location,
+            long cell,
             boolean isMale,
             double breedingProbability,
             int maxLitterSize,
             int maxAge,
             int breedingAge,
             double infectedProbability) {
-        super(isRandomAge, field, location, isMale, breedingProbability, maxLitterSize, maxAge, breedingAge, infectedProbability);
-        foodLevel = 40;
+        super(isRandomAge, field, cell, isMale, breedingProbability, maxLitterSize, maxAge, breedingAge, infectedProbability);
+        foodLevel = INITIAL_FOOD_LEVEL;
+        mealCell = -1;
+    }
+
+    /**
+     * Bring a dead creature back as a newborn, not hungry.
+     *
+     * @param field  The field to be born into.
+     * @param cell   The index of the cell within the field.
+     * @param isMale The sex of the newborn.
+     */
+    @Override
+    protected void reborn(Field field, long cell, boolean isMale) {
+        super.reborn(field, cell, isMale);
+        foodLevel = INITIAL_FOOD_LEVEL;
+        mealCell = -1;
+        foodBeforeMeal = 0;
     }
 
     @Override
@@ -55,21 +76,19 @@ public abstract class Eater extends Organism {
         incrementAge();
         incrementHunger();
         if (isAlive()) {
-            giveBirth(newOrganisms, getLocationList());
-            if(isInfected())
-                getInfector().infect(this, getField().adjacentLocations(getLocation()), getField());
+            giveBirth(newOrganisms);
             // Move towards a source of food if found.
-            Location newLocation = findFood();
-            if (newLocation == null) {
+            long newCell = findFood();
+            if (newCell < 0) {
                 // No food found - try to move to a free location.
-                newLocation = getField().freeAdjacentLocation(getLocation());
+                newCell = getField().freeAdjacentIndex(getCell());
             }
             // See if it was possible to move.
-            if (newLocation != null) {
-                setLocation(newLocation);
+            if (newCell >= 0) {
+                setCell(newCell);
             } else {
                 // Overcrowding.
-                setDead();
+                setDead(DeathCause.OVERCROWDING);
             }
         }
     }
@@ -81,40 +100,80 @@ public abstract class Eater extends Organism {
         foodLevel--;
         // kill animal when food level is negative
         if (foodLevel <= 0) {
-            setDead();
+            setDead(DeathCause.HUNGER);
         }
     }
 
     /**
-     * Look for rabbits adjacent to the current location.
-     * Only the first live rabbit is eaten.
+     * Look for prey adjacent to the current location.
+     * One of the adjacent animals that this creature can eat is
+     * picked at random and eaten.
      *
-     * @return Where food was found, or null if it wasn't.
+     * @return The cell where food was found, or -1 if it wasn't.
      */
-    protected Location findFood() {
-        for (Location where : getLocationList()) {
-            Object animalObj = getField().getObjectAt(where);
-            if (canEatCreature(animalObj)) {
-                Organism organism = (Organism) animalObj;
-                if (organism.isAlive() && !isHiding()) {
-                    organism.setDead();
-                    foodLevel = organism.getFoodLevel();
-                    return where;
-                }
-            }
+    protected long findFood() {
+        // Only a meal eaten in this step can be given up.
+        mealCell = -1;
+        if (isHiding()) {
+            return -1;
         }
-        return null;
+        Field field = getField();
+        long where = field.randomAdjacentIndex(getCell(), SpeciesRegistry.dietOf(getSpecies()));
+        if (where < 0) {
+            return -1;
+        }
+        Organism organism = (Organism) field.getObjectAt(where);
+        if (organism == null) {
+            // A plant of the field's plant layer, which has no object.
+            mealCell = where;
+            foodBeforeMeal = foodLevel;
+            foodLevel = field.getPlantLayer().eat(where);
+            return where;
+        }
+        if (!organism.isAlive()) {
+            // Already eaten this step, in a field that shows the start of the step.
+            return -1;
+        }
+        organism.setDead(DeathCause.EATEN);
+        mealCell = where;
+        foodBeforeMeal = foodLevel;
+        foodLevel = organism.getFoodLevel();
+        return where;
     }
 
-    protected abstract boolean canEatCreature(Object animal);
+    /**
+     * Give up the meal that was eaten in a lost cell, as well as the cell.
+     *
+     * @param lostCell The cell that was lost.
+     */
+    @Override
+    public void claimLost(long lostCell) {
+        if (lostCell == mealCell) {
+            foodLevel = foodBeforeMeal;
+        }
+        super.claimLost(lostCell);
+    }
 
-    protected abstract void giveBirth(List<Organism> newOrganisms, List<Location> adjacentLocations);
+    /**
+     * Pack the state of the creature, including its food level.
+     *
+     * @return The packed state.
+     */
+    @Override
+    public long packState() {
+        return super.packState() | (long) (foodLevel & 0xFFFF) << STATE_BITS;
+    }
 
     /**
-     * @return List of adjacent locations.
+     * Put back the state returned by packState.
+     *
+     * @param state The packed state.
      */
-    private List<Location> getLocationList() {
-        Field field = getField();
-        return field.adjacentLocations(getLocation());
+    @Override
+    public void restoreState(long state) {
+        super.restoreState(state);
+        foodLevel = (int) (state >>> STATE_BITS & 0xFFFF);
     }
+
+    protected abstract void giveBirth(List<Organism> newOrganisms);
 }
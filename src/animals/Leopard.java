@@ -4,10 +4,9 @@ import animals.prey.Plant;
 import animals.prey.day_eaters.Capybara;
 import animals.prey.Rat;
 import field.Field;
-import field.Location;
+import field.SpeciesRegistry;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * A simple model of a leopard.
@@ -29,8 +28,13 @@ public class Leopard extends Eater {
     private static final double INFECTED_PROBABILITY = 0.01;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 3;
+    // Creates a newborn leopard; shared by all leopards.
+    private static final OrganismCreator CREATOR = (field, cell, isMale) -> new Leopard(false, field, cell, isMale);
 
-    private Random random;
+    static {
+        // The species a leopard can eat.
+        SpeciesRegistry.setDiet(Leopard.class, Capybara.class, Rat.class);
+    }
 
     /**
      * Create a leopard. A leopard can be created as a new born (age zero
@@ -38,22 +42,11 @@ public class Leopard extends Eater {
      *
      * @param randomAge If true, the leopard will have random age and hunger level.
      * @param field     The field currently occupied.
-     * @param location  The location within the field.
+     * @param cell      The index of the cell within the field.
      */
-    public Leopard(boolean randomAge, Field field, Location location, boolean isMale) {
-        super(randomAge, field, location, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
+    public Leopard(boolean randomAge, Field field, long cell, boolean isMale) {
+        super(randomAge, field, cell, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
                 INFECTED_PROBABILITY);
-        random = new Random();
-    }
-
-    /**
-     * Checks if leopard can eat the animal passed as an argument
-     * @param animal An organism object
-     * @return boolean of whether leopard can eat the organism
-     */
-    @Override
-    protected boolean canEatCreature(Object organism) {
-        return organism instanceof Capybara || organism instanceof Rat;
     }
 
     /**
@@ -63,16 +56,8 @@ public class Leopard extends Eater {
      * @param newLeopards A list to return newly born leopards.
      */
     @Override
-    protected void giveBirth(List<Organism> newLeopards, List<Location> adjacentLocations) {
-        // We get all adjacent locations and check if the animals is able to give a birth
-        // with some organism near it
-        for (Location where : adjacentLocations) {
-            Object animal = getField().getObjectAt(where);
-            if (animal instanceof Leopard && ((Leopard) animal).isMale() != this.isMale()) {
-                // super.giveBirth calls the method inside Creature which gives birth
-                super.giveBirth(newLeopards, (field, location) -> new Leopard(false, field, location, random.nextBoolean()));
-            }
-        }
+    protected void giveBirth(List<Organism> newLeopards) {
+        breedWithNeighbours(newLeopards, CREATOR, true);
     }
 
     /**
@@ -1,12 +1,13 @@
 package animals;
 
 import field.Field;
-import field.Location;
-import infector.Infector;
+import field.Occupant;
+import field.SpeciesRegistry;
 import utils.Randomizer;
 
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class representing shared characteristics of organism.
@@ -14,13 +15,39 @@ import java.util.Random;
  * @author Jonathan Rivera, Andrian Stoykov, Pushkar Garg
  * @version 2020.02.17
  */
-public abstract class Organism {
+public abstract class Organism implements Occupant {
+    // The layout of the state packed by packState: the species code in
+    // the lowest 6 bits, then the sex, infected and hiding flags, then
+    // 15 bits of age and the stage of the infection: set for an infected
+    // organism that is only exposed, and for an uninfected one that has
+    // recovered (see Epidemic). Subclasses may use the bits from
+    // STATE_BITS up.
+    private static final int MALE_BIT = 6;
+    private static final int INFECTED_BIT = 7;
+    private static final int HIDING_BIT = 8;
+    private static final int AGE_SHIFT = 9;
+    private static final int AGE_MASK = 0x7FFF;
+    private static final int STAGE_BIT = 24;
+    protected static final int STATE_BITS = 25;
+    // The next unused organism id.
+    private static final AtomicLong nextId = new AtomicLong();
+
+    // The organism's species code (see SpeciesRegistry).
+    private final int species;
+    // The organism's id, unique among the organisms of a run.
+    private long id;
+    // Told about what happens to the organism, or null.
+    private OrganismListener listener;
     // Whether the organism is alive or not.
     private boolean alive;
     // The organism's field.
     private Field field;
-    // The organism's position in the field.
-    private Location location;
+    // The index of the organism's cell in the field.
+    private long cell;
+    // The cell the organism last moved from, or -1 if it has not moved.
+    private long previousCell;
+    // The key of the organism's latest claim to a cell, see Occupant.
+    private long claimKey;
     // The organism's breeding probability.
     private double breedingProbability;
     // The organism's max number of births.
@@ -33,45 +60,44 @@ public abstract class Organism {
     // The maximum possible age of an organism
     private int maxAge;
 
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-
-    // The age of the organism
-    private int age;
+    // The age of the organism, less the reading of its age clock (see ageClock)
+    private long age;
 
     //The gender of the creature
     private boolean isMale;
 
-    // Indicates what time of the day is now
-    private boolean isNight;
-    // Indicates if raining
-    private boolean isRaining;
     // Indicates if hiding
     private boolean isHiding;
     // Indicates if infected
     private boolean isInfected;
-    // Used to infect cross species
-    private Infector infector;
+    // Indicates if infected but not yet infectious
+    private boolean isExposed;
+    // Indicates if recovered from an infection, and immune
+    private boolean isRecovered;
 
     /**
      * Create a new organism at location in field.
      *
      * @param field    The field currently occupied.
-     * @param location The location within the field.
+     * @param cell     The index of the cell within the field.
      */
     public Organism(
             boolean isRandomAge,
             Field field,
-            Location location,
+            long cell,
             boolean isMale,
             double breedingProbability,
             int maxLitterSize,
             int maxAge,
             int breedingAge,
             double infectedProbability) {
+        species = SpeciesRegistry.codeOf(getClass());
+        id = nextId.getAndIncrement();
         alive = true;
         this.field = field;
-        setLocation(location);
+        this.cell = -1;
+        this.previousCell = -1;
+        setCell(cell);
 
         // organism specific options
         this.breedingProbability = breedingProbability;
@@ -83,8 +109,34 @@ public abstract class Organism {
         this.isMale = isMale;
         isHiding = false;
         this.setAge(isRandomAge);
+    }
+
+    /**
+     * Bring a dead organism back as a newborn in a cell of a field, in
+     * the same state as if it had just been created there. Subclasses
+     * with state of their own reset it too.
+     *
+     * @param field  The field to be born into.
+     * @param cell   The index of the cell within the field.
+     * @param isMale The sex of the newborn.
+     */
+    protected void reborn(Field field, long cell, boolean isMale) {
+        id = nextId.getAndIncrement();
+        listener = null;
+        alive = true;
+        // Dead organisms are out of the field, so no count is changed.
+        isInfected = false;
+        isExposed = false;
+        isRecovered = false;
+        isHiding = false;
+        this.field = field;
+        this.cell = -1;
+        this.previousCell = -1;
+        claimKey = 0;
+        setCell(cell);
 
-        infector = new Infector();
+        this.isMale = isMale;
+        setAge(false);
     }
 
 
@@ -101,28 +153,98 @@ public abstract class Organism {
         return isMale;
     }
 
-    public void setDayTime(boolean isNight) {
-        this.isNight = isNight;
-    }
-
-    public void setRain(boolean isRaining) {
-        this.isRaining = isRaining;
-    }
-
     public void setHiding(boolean isHiding) {
         this.isHiding = isHiding;
+        publishState();
     }
 
     public void setInfected(boolean infected) {
-        this.isInfected = infected;
+        boolean changed = infected != isInfected;
+        isExposed = false;
+        setInfectedFlag(infected);
+        publishState();
+        if (changed && listener != null && alive) {
+            listener.infectionChanged(this);
+        }
     }
 
     public boolean isInfected() {
         return isInfected;
     }
 
-    public Infector getInfector() {
-        return infector;
+    /**
+     * Infect the organism without it becoming infectious yet; it counts
+     * as infected all the same.
+     */
+    public void setExposed() {
+        setInfected(true);
+        isExposed = true;
+    }
+
+    /**
+     * @return true if the organism is infected and can pass it on.
+     */
+    public boolean isInfectious() {
+        return isInfected && !isExposed;
+    }
+
+    /**
+     * Cure the organism for good: it cannot be infected again.
+     */
+    public void recover() {
+        isRecovered = true;
+        setInfected(false);
+    }
+
+    /**
+     * @return true if the organism can be infected.
+     */
+    public boolean isSusceptible() {
+        return !isInfected && !isRecovered;
+    }
+
+    /**
+     * Tell whether the organism passes on an infection to its neighbours
+     * while it is infectious. By default organisms do.
+     *
+     * @return true if the organism spreads disease.
+     */
+    public boolean isCarrier() {
+        return true;
+    }
+
+    /**
+     * @return The organism's species code (see SpeciesRegistry).
+     */
+    public int getSpecies() {
+        return species;
+    }
+
+    /**
+     * @return The organism's id, unique among the organisms of a run.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Give the organism the id it had when the simulation was saved.
+     *
+     * @param id The id.
+     */
+    public void restoreId(long id) {
+        this.id = id;
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Set the listener told about what happens to the organism and,
+     * from now on, to its young.
+     *
+     * @param listener The listener, or null for none.
+     */
+    public void setListener(OrganismListener listener) {
+        this.listener = listener;
     }
 
     /**
@@ -133,39 +255,129 @@ public abstract class Organism {
      */
     public abstract void act(List<Organism> newOrganisms);
 
+    /**
+     * Tell whether the organism would do nothing at all if it acted now:
+     * change nothing and draw no random numbers. A dormant organism may
+     * be skipped for the step. By default organisms are never dormant.
+     *
+     * @return true if acting would do nothing.
+     */
+    public boolean isDormant() {
+        return false;
+    }
+
+    /**
+     * Return the clock the organism ages by without acting, read off its
+     * field; the age is then the stored value plus the reading. By
+     * default organisms count their age themselves (see incrementAge)
+     * and the clock stands still at 0. Only called while the organism
+     * is in a field.
+     *
+     * @return The reading of the clock.
+     */
+    protected long ageClock() {
+        return 0;
+    }
+
+    /**
+     * @return The age of the organism.
+     */
+    protected int getAge() {
+        return (int) (age + ageClock());
+    }
+
     /**
      * Indicate that the organism is no longer alive.
      * It is removed from the field.
+     *
+     * @param cause How the organism died.
      */
-    protected void setDead() {
+    protected void setDead(DeathCause cause) {
+        if (alive && listener != null) {
+            listener.died(this, cell, cause);
+        }
         alive = false;
-        if (location != null) {
-            field.clear(location);
-            location = null;
+        if (cell >= 0) {
+            if (isInfected) {
+                field.infectedRemoved(species);
+            }
+            field.clear(cell, this);
+            cell = -1;
             field = null;
         }
     }
 
     /**
-     * Return the organism's location.
+     * Return the index of the organism's cell.
      *
-     * @return The organism's location.
+     * @return The organism's cell, or -1 if it is no longer in the field.
      */
-    protected Location getLocation() {
-        return location;
+    @Override
+    public long getCell() {
+        return cell;
     }
 
     /**
-     * Place the organism at the new location in the given field.
+     * Return the key of the organism's latest claim to a cell. A move
+     * is keyed by the cell moved from, a birth by the parent's cell,
+     * and a move wins over a birth from the same cell.
      *
-     * @param newLocation The organism's new location.
+     * @return The key of the claim.
      */
-    protected void setLocation(Location newLocation) {
-        if (location != null) {
-            field.clear(location);
+    @Override
+    public long getClaimKey() {
+        return claimKey;
+    }
+
+    /**
+     * Go back to the cell the organism moved from, as another organism
+     * has won the cell it moved to. An organism that was born into the
+     * cell has nowhere to go back to, and dies.
+     *
+     * @param lostCell The cell that was lost.
+     */
+    @Override
+    public void claimLost(long lostCell) {
+        if (previousCell >= 0) {
+            cell = previousCell;
+            previousCell = -1;
+            field.place(this, cell);
+            publishState();
+            if (listener != null) {
+                listener.moved(this, lostCell);
+            }
+        } else {
+            if (listener != null) {
+                listener.died(this, lostCell, DeathCause.DISPLACED);
+            }
+            // The cell now belongs to the winner, so it is not cleared.
+            if (isInfected) {
+                field.infectedRemoved(species);
+            }
+            alive = false;
+            cell = -1;
+            field = null;
+        }
+    }
+
+    /**
+     * Place the organism in the new cell of the given field.
+     *
+     * @param newCell The index of the organism's new cell.
+     */
+    protected void setCell(long newCell) {
+        long oldCell = cell;
+        if (oldCell >= 0) {
+            previousCell = oldCell;
+            claimKey = 2 * oldCell;
+            field.move(oldCell, newCell);
+        } else {
+            field.place(this, newCell);
+        }
+        cell = newCell;
+        if (oldCell >= 0 && listener != null) {
+            listener.moved(this, oldCell);
         }
-        location = newLocation;
-        field.place(this, newLocation);
     }
 
     /**
@@ -177,25 +389,75 @@ public abstract class Organism {
         return field;
     }
 
+    /**
+     * Give birth to young of the same species in free adjacent cells,
+     * reusing dead organisms from the pool bound to the thread, if any
+     * (see OrganismPool), before creating new ones.
+     *
+     * @param newOrganisms A list to receive the young.
+     * @param creator Creates a newborn of the species.
+     */
     protected void giveBirth(List<Organism> newOrganisms, OrganismCreator creator) {
         // New creatures are born into adjacent locations.
-        // Get a list of adjacent free locations.
+        // Get a mask of the adjacent free cells.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int free = field.freeAdjacentMask(cell);
         int births = breed();
-        for (int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Organism young = creator.create(field, loc);
+        OrganismPool pool = births > 0 ? OrganismPool.current() : null;
+        for (int b = 0; b < births && free != 0; b++) {
+            int direction = field.randomDirection(free);
+            free &= ~(1 << direction);
+            long youngCell = field.adjacentIndex(cell, direction);
+            boolean youngIsMale = Randomizer.getRandom().nextBoolean();
+            Organism young = pool == null ? null : pool.take(species);
+            if (young != null) {
+                young.reborn(field, youngCell, youngIsMale);
+            } else {
+                young = creator.create(field, youngCell, youngIsMale);
+            }
+            young.claimKey = 2 * cell + 1;
+            young.listener = listener;
+            if (listener != null) {
+                listener.born(young);
+            }
             newOrganisms.add(young);
         }
     }
 
+    /**
+     * Give birth once for each neighbour of the same species that the
+     * organism can breed with, looking at the species codes the field
+     * keeps rather than at the neighbours themselves.
+     *
+     * @param newOrganisms A list to receive the young.
+     * @param creator Creates a newborn of the species.
+     * @param needsMate Whether the neighbour must be of the opposite sex.
+     */
+    protected void breedWithNeighbours(List<Organism> newOrganisms, OrganismCreator creator, boolean needsMate) {
+        Field field = getField();
+        long here = cell;
+        for (int mask = field.adjacentMask(here); mask != 0; mask &= mask - 1) {
+            long where = field.adjacentIndex(here, Integer.numberOfTrailingZeros(mask));
+            if (field.getSpeciesAt(where) == species
+                    && (!needsMate || ((Organism) field.getObjectAt(where)).isMale != isMale)) {
+                giveBirth(newOrganisms, creator);
+            }
+        }
+    }
+
+    /**
+     * @return Whether it is raining on the organism's cell; false once
+     *         it has left the field.
+     */
     protected boolean isRaining() {
-        return this.isRaining;
+        return field != null && field.getEnvironment().isRaining(cell);
     }
 
+    /**
+     * @return Whether it is night; false once the organism has left the field.
+     */
     protected boolean isNight() {
-        return this.isNight;
+        return field != null && field.getEnvironment().isNight();
     }
 
     protected boolean isHiding() {
@@ -204,22 +466,146 @@ public abstract class Organism {
 
     protected void incrementAge() {
         age++;
-        if (age > maxAge) {
-            setDead();
+        checkAge();
+    }
+
+    /**
+     * Let the organism die of old age if it has outlived its maximum
+     * age, or else report its age to the field.
+     */
+    protected void checkAge() {
+        if (getAge() > maxAge) {
+            setDead(DeathCause.AGE);
+        } else {
+            publishState();
         }
     }
 
     protected abstract int getFoodLevel();
 
+    /**
+     * Pack the state of the organism that lasts from one step to the
+     * next into a single number, for saving the simulation. The cell
+     * is not included.
+     *
+     * @return The packed state.
+     */
+    public long packState() {
+        return species
+                | (isMale ? 1L : 0L) << MALE_BIT
+                | (isInfected ? 1L : 0L) << INFECTED_BIT
+                | (isHiding ? 1L : 0L) << HIDING_BIT
+                | (long) (getAge() & AGE_MASK) << AGE_SHIFT
+                | (isExposed || isRecovered ? 1L : 0L) << STAGE_BIT;
+    }
+
+    /**
+     * Put back the state returned by packState.
+     *
+     * @param state The packed state.
+     */
+    public void restoreState(long state) {
+        isMale = (state >>> MALE_BIT & 1) != 0;
+        setInfectedFlag((state >>> INFECTED_BIT & 1) != 0);
+        boolean staged = (state >>> STAGE_BIT & 1) != 0;
+        isExposed = staged && isInfected;
+        isRecovered = staged && !isInfected;
+        isHiding = (state >>> HIDING_BIT & 1) != 0;
+        age = (state >>> AGE_SHIFT & AGE_MASK) - ageClock();
+        publishState();
+    }
+
+    /**
+     * @param state A state returned by packState.
+     * @return The species code held in the state.
+     */
+    public static int speciesOf(long state) {
+        return (int) (state & SpeciesRegistry.MAX_SPECIES);
+    }
+
+    /**
+     * Pack the state of an organism that has no object of its own, such
+     * as a plant of a plant layer, as packState would.
+     *
+     * @param code The species code.
+     * @param isMale The sex.
+     * @param isInfected Whether it is infected.
+     * @param age The age.
+     * @return The packed state.
+     */
+    public static long packState(int code, boolean isMale, boolean isInfected, int age) {
+        return code
+                | (isMale ? 1L : 0L) << MALE_BIT
+                | (isInfected ? 1L : 0L) << INFECTED_BIT
+                | (long) (age & AGE_MASK) << AGE_SHIFT;
+    }
+
+    /**
+     * @param state A state returned by packState.
+     * @return The age held in the state.
+     */
+    public static int ageOf(long state) {
+        return (int) (state >>> AGE_SHIFT & AGE_MASK);
+    }
+
+    /**
+     * @param state A state returned by packState.
+     * @return Whether the state is of an infected organism.
+     */
+    public static boolean isInfectedIn(long state) {
+        return (state >>> INFECTED_BIT & 1) != 0;
+    }
+
+    /**
+     * @param state A state returned by packState.
+     * @param isMale The sex to give it.
+     * @param isInfected The infection to give it.
+     * @return The state with the given sex and infection, and no stage
+     *         of the infection.
+     */
+    public static long withFlags(long state, boolean isMale, boolean isInfected) {
+        return state & ~(1L << MALE_BIT | 1L << INFECTED_BIT | 1L << STAGE_BIT)
+                | (isMale ? 1L : 0L) << MALE_BIT
+                | (isInfected ? 1L : 0L) << INFECTED_BIT;
+    }
+
     public double getInfectedProbability() {
         return infectedProbability;
     }
 
     private void setAge(boolean isRandomAge) {
         if (isRandomAge) {
-            age = rand.nextInt(maxAge);
+            age = Randomizer.getRandom().nextInt(maxAge) - ageClock();
         } else {
-            age = 0;
+            age = -ageClock();
+        }
+        publishState();
+    }
+
+    /**
+     * Set whether the organism is infected, keeping its field's count
+     * of infected animals up to date while it is in the field.
+     */
+    private void setInfectedFlag(boolean infected) {
+        if (infected != isInfected && field != null) {
+            if (infected) {
+                field.infectedAdded(species);
+            } else {
+                field.infectedRemoved(species);
+            }
+        }
+        isInfected = infected;
+    }
+
+    /**
+     * Report the organism's age and flags to its field.
+     */
+    private void publishState() {
+        if (cell >= 0) {
+            int flags = (isInfected ? Field.FLAG_INFECTED : 0)
+                    | (isHiding ? Field.FLAG_HIDING : 0)
+                    | (isMale ? Field.FLAG_MALE : 0);
+            field.updateState(cell, getAge(), flags);
         }
     }
 
@@ -230,14 +616,15 @@ public abstract class Organism {
     private int breed() {
         int births = 0;
         // generates random probability determining whether to give birth
+        RandomGenerator rand = Randomizer.getRandom();
         if (canBreed() && rand.nextDouble() <= breedingProbability) {
             births = rand.nextInt(maxLitterSize) + 1;
         }
         return births;
     }
 
-    private boolean canBreed() {
-        return age >= breedingAge;
+    protected boolean canBreed() {
+        return getAge() >= breedingAge;
     }
 }
 
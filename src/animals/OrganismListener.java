@@ -0,0 +1,39 @@
+package animals;
+
+/**
+ * Told about everything that happens to the organisms it listens to.
+ * Organisms pass their listener on to their young. While organisms act
+ * in parallel the methods are called from several threads at once, each
+ * about organisms in a different part of the field.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public interface OrganismListener {
+    /**
+     * An organism was born, or placed in the field at the start.
+     * @param organism The organism, already in its cell.
+     */
+    void born(Organism organism);
+
+    /**
+     * An organism moved.
+     * @param organism The organism, already in its new cell.
+     * @param from The cell it moved from.
+     */
+    void moved(Organism organism, long from);
+
+    /**
+     * An organism was infected or cured.
+     * @param organism The organism.
+     */
+    void infectionChanged(Organism organism);
+
+    /**
+     * An organism died.
+     * @param organism The organism.
+     * @param cell The cell it died in.
+     * @param cause How it died.
+     */
+    void died(Organism organism, long cell, DeathCause cause);
+}
@@ -0,0 +1,123 @@
+package animals;
+
+import field.SpeciesRegistry;
+
+import java.util.Arrays;
+
+/**
+ * Dead organisms kept to be born again, so that a running simulation
+ * need not allocate a new object for every birth. There is a stack of
+ * them for each species.
+ *
+ * A dead organism may still be seen until the end of the step it died
+ * in, for example by a field that shows the start of the step. So dead
+ * organisms are first retired, and only become available once recycle
+ * is called after the step has finished.
+ *
+ * A pool is used by one thread at a time. While a thread has a pool
+ * bound, the young born on that thread are taken from it; otherwise
+ * they are created afresh.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class OrganismPool {
+    // The pools bound to particular threads.
+    private static final ThreadLocal<OrganismPool> bound = new ThreadLocal<>();
+
+    // The organisms available, and those retired this step, by species code.
+    private Organism[][] available;
+    private int[] availableCount;
+    private Organism[] retired;
+    private int retiredCount;
+
+    /**
+     * Create an empty pool.
+     */
+    public OrganismPool() {
+        available = new Organism[SpeciesRegistry.MAX_SPECIES + 1][0];
+        availableCount = new int[SpeciesRegistry.MAX_SPECIES + 1];
+        retired = new Organism[64];
+    }
+
+    /**
+     * Take the young born on the current thread from the given pool
+     * until unbind is called.
+     *
+     * @param pool The pool.
+     */
+    public static void bind(OrganismPool pool) {
+        bound.set(pool);
+    }
+
+    /**
+     * Go back to creating the young born on the current thread afresh.
+     */
+    public static void unbind() {
+        bound.remove();
+    }
+
+    /**
+     * @return The pool bound to the current thread, or null if none is.
+     */
+    static OrganismPool current() {
+        return bound.get();
+    }
+
+    /**
+     * Keep a dead organism, to be available from the next recycle.
+     *
+     * @param organism The organism, which must be dead and no longer
+     *                 among the organisms of the simulation.
+     */
+    public void retire(Organism organism) {
+        if (retiredCount == retired.length) {
+            retired = Arrays.copyOf(retired, retiredCount * 2);
+        }
+        retired[retiredCount++] = organism;
+    }
+
+    /**
+     * Make the organisms retired so far available to be born again.
+     * Call once the step they died in has finished.
+     */
+    public void recycle() {
+        for (int i = 0; i < retiredCount; i++) {
+            Organism organism = retired[i];
+            retired[i] = null;
+            int code = organism.getSpecies();
+            if (availableCount[code] == available[code].length) {
+                available[code] = Arrays.copyOf(available[code], Math.max(16, availableCount[code] * 2));
+            }
+            available[code][availableCount[code]++] = organism;
+        }
+        retiredCount = 0;
+    }
+
+    /**
+     * Drop every organism kept.
+     */
+    public void clear() {
+        for (int code = 0; code < available.length; code++) {
+            Arrays.fill(available[code], 0, availableCount[code], null);
+            availableCount[code] = 0;
+        }
+        Arrays.fill(retired, 0, retiredCount, null);
+        retiredCount = 0;
+    }
+
+    /**
+     * Take a dead organism of a species.
+     *
+     * @param code The species code.
+     * @return The organism, or null if there is none.
+     */
+    Organism take(int code) {
+        if (availableCount[code] == 0) {
+            return null;
+        }
+        Organism organism = available[code][--availableCount[code]];
+        available[code][availableCount[code]] = null;
+        return organism;
+    }
+}
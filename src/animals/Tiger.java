@@ -2,10 +2,9 @@ package animals;
 
 import animals.prey.day_eaters.Deer;
 import field.Field;
-import field.Location;
+import field.SpeciesRegistry;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * A simple model of a tiger.
@@ -26,39 +25,30 @@ public class Tiger extends Eater {
     private static final double INFECTED_PROBABILITY = 0.01;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 2;
+    // Creates a newborn tiger; shared by all tigers.
+    private static final OrganismCreator CREATOR = (field, cell, isMale) -> new Tiger(false, field, cell, isMale);
 
-    private Random random;
+    static {
+        // The species a tiger can eat.
+        SpeciesRegistry.setDiet(Tiger.class, Deer.class);
+    }
 
     /**
      * Create a new animal at location in field.
      *
      * @param isRandomAge If the age should be randomly assigned.
      * @param field       The field currently occupied.
-     * @param location    The location within the field.
+     * @param cell        The index of the cell within the field.
      **/
 
-    public Tiger(boolean isRandomAge, Field field, Location location, boolean isMale) {
-        super(isRandomAge, field, location, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
+    public Tiger(boolean isRandomAge, Field field, long cell, boolean isMale) {
+        super(isRandomAge, field, cell, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
                 INFECTED_PROBABILITY);
-        random = new Random();
-    }
-
-    @Override
-    protected boolean canEatCreature(Object animal) {
-        return animal instanceof Deer;
     }
 
     @Override
-    protected void giveBirth(List<Organism> newTigers, List<Location> adjacentLocations) {
-        // We get all adjacent locations and check if the animals is able to give a birth
-        // with some organism near it
-        for (Location where : adjacentLocations) {
-            Object animal = getField().getObjectAt(where);
-            if (animal instanceof Tiger && ((Tiger) animal).isMale() != this.isMale()) {
-                // super.giveBirth calls the method inside Creature which gives birth
-                super.giveBirth(newTigers, (field, location) -> new Tiger(false, field, location, random.nextBoolean()));
-            }
-        }
+    protected void giveBirth(List<Organism> newTigers) {
+        breedWithNeighbours(newTigers, CREATOR, true);
     }
 
     @Override
@@ -3,10 +3,10 @@ package animals.prey;
 import animals.Organism;
 import animals.OrganismCreator;
 import field.Field;
-import field.Location;
+import field.PlantLayer;
+import field.SpeciesRegistry;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * A simple model of a plant.
@@ -30,20 +30,34 @@ public class Plant extends Organism {
     private static final int MAX_LITTER_SIZE = 2;
     // The food value of a plant
     private static final int PLANT_FOOD_VALUE = 5;
-
-    private Random random;
+    // Creates a newborn plant; shared by all plants.
+    private static final OrganismCreator CREATOR = (field, cell, isMale) -> new Plant(false, field, cell, isMale);
 
     /**
      * Create a new plant at location in field.
      *
      * @param isRandomAge if the Plant should be instantiated with random age
      * @param field       The field currently occupied.
-     * @param location    The location within the field.
+     * @param cell        The index of the cell within the field.
      */
-    public Plant(boolean isRandomAge, Field field, Location location, boolean isMale) {
-        super(isRandomAge, field, location, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
+    public Plant(boolean isRandomAge, Field field, long cell, boolean isMale) {
+        super(isRandomAge, field, cell, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
                 INFECTED_PROBABILITY);
-        this.random = new Random();
+    }
+
+    /**
+     * Keep the plants of a field as a plant layer rather than as
+     * organisms, with the characteristics of plants. Plants of a layer
+     * spread to free cells around them rather than needing a neighbour
+     * to breed (see PlantLayer).
+     *
+     * @param field The field, which must be able to hold bare occupants.
+     * @return The plant layer.
+     * @throws IllegalArgumentException If the field cannot hold a plant layer.
+     */
+    public static PlantLayer createLayer(Field field) {
+        return new PlantLayer(field, SpeciesRegistry.codeOf(Plant.class), BREEDING_AGE, MAX_AGE,
+                BREEDING_PROBABILITY, INFECTED_PROBABILITY, PLANT_FOOD_VALUE);
     }
 
     /**
@@ -53,14 +67,45 @@ public class Plant extends Organism {
      * @param newPlants A list to return newly born plants.
      */
     public void act(List<Organism> newPlants) {
-        // Plants grow when it rains
+        // Plants grow when it rains, by the rain clock of their cell
         if (isRaining())
-            incrementAge();
+            checkAge();
         if (isAlive()) {
             giveBirth(newPlants);
         }
     }
 
+    /**
+     * A plant grows without acting, as its age is read off the rain
+     * clock, and is too young to breed until it has grown enough; so
+     * a young plant does nothing, rain or shine.
+     *
+     * @return true if the plant is too young to breed.
+     */
+    @Override
+    public boolean isDormant() {
+        return !canBreed();
+    }
+
+    /**
+     * Plants catch diseases but do not pass them on.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean isCarrier() {
+        return false;
+    }
+
+    /**
+     * @return The number of steps it has rained on the plant's cell,
+     *         which the plant ages by.
+     */
+    @Override
+    protected long ageClock() {
+        return getField().getEnvironment().getRainClock(getCell());
+    }
+
     /**
      * @return returns the default food level of the plant
      */
@@ -77,16 +122,6 @@ public class Plant extends Organism {
      * @param newPlants A list to return newly born plants.
      */
     private void giveBirth(List<Organism> newPlants) {
-        Field currentField = getField();
-        List<Location> adjacent = currentField.adjacentLocations(getLocation());
-
-        for (Location where : adjacent) {
-            Object organism = getField().getObjectAt(where);
-            if (organism instanceof Plant) {
-                OrganismCreator creator = (field, location) -> new Plant(false, field, location, random.nextBoolean());
-                // super.giveBirth calls the method inside Creature which gives birth
-                super.giveBirth(newPlants, creator);
-            }
-        }
+        breedWithNeighbours(newPlants, CREATOR, false);
     }
 }
@@ -1,12 +1,12 @@
 package animals.prey;
 
+import animals.DeathCause;
 import animals.Organism;
 import animals.OrganismCreator;
 import field.Field;
-import field.Location;
+import utils.Randomizer;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * A simple model of a rat.
@@ -32,8 +32,8 @@ public class Rat extends Organism {
     private static final double INFECTED_PROBABILITY = 0.05;
 
     private static final int RAT_FOOD_VALUE = 2;
-
-    private Random random;
+    // Creates a newborn rat; shared by all rats.
+    private static final OrganismCreator CREATOR = (field, cell, isMale) -> new Rat(false, field, cell, isMale);
 
 
 
@@ -42,13 +42,24 @@ public class Rat extends Organism {
      *
      * @param randomAge           Shows if the Rat should have a random age
      * @param field               The field currently occupied.
-     * @param location            The location within the field.
+     * @param cell                The index of the cell within the field.
      */
-    public Rat(boolean randomAge, Field field, Location location, boolean isMale) {
-        super(randomAge, field, location, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
+    public Rat(boolean randomAge, Field field, long cell, boolean isMale) {
+        super(randomAge, field, cell, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
                     INFECTED_PROBABILITY);
-        random = new Random();
-        setInfected(random.nextDouble() <= INFECTED_PROBABILITY);
+        setInfected(Randomizer.getRandom().nextDouble() <= INFECTED_PROBABILITY);
+    }
+
+    /**
+     * Bring a dead rat back as a newborn, which may be born infected.
+     * @param field               The field to be born into.
+     * @param cell                The index of the cell within the field.
+     * @param isMale              The sex of the newborn.
+     */
+    @Override
+    protected void reborn(Field field, long cell, boolean isMale) {
+        super.reborn(field, cell, isMale);
+        setInfected(Randomizer.getRandom().nextDouble() <= INFECTED_PROBABILITY);
     }
 
 
@@ -69,17 +80,15 @@ public class Rat extends Organism {
 
         if(isAlive()) {
             giveBirth(newRats);
-            if(isInfected())
-                getInfector().infect(this, getField().adjacentLocations(getLocation()), getField());
             //rats hide if raining and don't move
             if(!isHiding()) {
                 // Try to move into a free location.
-                Location newLocation = getField().freeAdjacentLocation(getLocation());
-                if (newLocation != null) {
-                    setLocation(newLocation);
+                long newCell = getField().freeAdjacentIndex(getCell());
+                if (newCell >= 0) {
+                    setCell(newCell);
                 } else {
                     // Overcrowding.
-                    setDead();
+                    setDead(DeathCause.OVERCROWDING);
                 }
             }
 
@@ -102,16 +111,6 @@ public class Rat extends Organism {
      * @param newRats A list to return newly born rats.
      */
     private void giveBirth(List<Organism> newRats) {
-        Field currentField = getField();
-        List<Location> adjacent = currentField.adjacentLocations(getLocation());
-
-        for (Location where : adjacent) {
-            Object animal = getField().getObjectAt(where);
-            if (animal instanceof Rat && ((Rat) animal).isMale() != this.isMale()) {
-                OrganismCreator creator = (field, location) -> new Rat(false, field, location, random.nextBoolean());
-                // super.giveBirth calls the method inside Creature which gives birth
-                super.giveBirth(newRats, creator);
-            }
-        }
+        breedWithNeighbours(newRats, CREATOR, true);
     }
 }
@@ -1,12 +1,12 @@
 package animals.prey.day_eaters;
 
 import animals.Organism;
+import animals.OrganismCreator;
 import animals.prey.Plant;
 import field.Field;
-import field.Location;
+import field.SpeciesRegistry;
 
 import java.util.List;
-import java.util.Random;
 
 
 /**
@@ -30,10 +30,14 @@ public class Capybara extends DayEater {
     private static final int MAX_LITTER_SIZE = 4;
     // The food value of capybara
     private static final int CAPYBARA_FOOD_VALUE = 9;
+    private static final OrganismCreator CREATOR = (field, cell, isMale) -> new Capybara(false, field, cell, isMale);
 
-    // Individual characteristics (instance fields).
+    static {
+        // The species a capybara can eat.
+        SpeciesRegistry.setDiet(Capybara.class, Plant.class);
+    }
 
-    private Random random;
+    // Individual characteristics (instance fields).
 
     /**
      * Create a new capybara. A capybara may be created with age
@@ -41,22 +45,11 @@ public class Capybara extends DayEater {
      *
      * @param randomAge If true, the capybara will have a random age.
      * @param field     The field currently occupied.
-     * @param location  The location within the field.
+     * @param cell      The index of the cell within the field.
      */
-    public Capybara(boolean randomAge, Field field, Location location, boolean isMale) {
-        super(randomAge, field, location, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
+    public Capybara(boolean randomAge, Field field, long cell, boolean isMale) {
+        super(randomAge, field, cell, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
                 INFECTED_PROBABILITY);
-        random = new Random();
-    }
-
-    /**
-     * The method checks if the current animal can eat the given organism
-     * @param organism the organism which is near passed from the Eater abstract class
-     * @return true if the current animal can eat this organism
-     */
-    @Override
-    protected boolean canEatCreature(Object organism) {
-        return organism instanceof Plant;
     }
 
     /**
@@ -72,17 +65,9 @@ public class Capybara extends DayEater {
     /**
      * Capybaras can give birth only if they meet animal of the same specie and opposite gender
      * @param newCapybaras List of all the new capybaras
-     * @param adjacentLocations locations which are near the current animal
      */
     @Override
-    protected void giveBirth(List<Organism> newCapybaras, List<Location> adjacentLocations) {
-        for (Location where : adjacentLocations) {
-            // obtains organisms surrounding capybara
-            Object organism = getField().getObjectAt(where);
-            if (organism instanceof Capybara && ((Capybara) organism).isMale() != this.isMale()) {
-                // super.giveBirth calls the method inside Creature which gives birth
-                super.giveBirth(newCapybaras, (field, location) -> new Capybara(false, field, location, random.nextBoolean()));
-            }
-        }
+    protected void giveBirth(List<Organism> newCapybaras) {
+        breedWithNeighbours(newCapybaras, CREATOR, true);
     }
 }
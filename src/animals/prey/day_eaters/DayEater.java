@@ -1,9 +1,9 @@
 package animals.prey.day_eaters;
 
 import animals.Organism;
+import animals.DeathCause;
 import animals.Eater;
 import field.Field;
-import field.Location;
 
 import java.util.List;
 
@@ -19,7 +19,7 @@ public abstract class DayEater extends Eater {
      *
      * @param isRandomAge         If the age should be randomly assigned
      * @param field               The field currently occupied.
-     * @param location            The location within the field.
+     * @param cell                The index of the cell within the field.
      * @param isMale              Shows if the predator is male or not
      * @param breedingProbability The probability to breed
      * @param maxLitterSize       The maximum number of children
@@ -27,9 +27,9 @@ public abstract class DayEater extends Eater {
      * @param breedingAge         The minimum age of breeding
      * @param infectedProbability The probability of infection
      */
-    public DayEater(boolean isRandomAge, Field field, Location location, boolean isMale, double breedingProbability, int maxLitterSize, int maxAge, int breedingAge,
+    public DayEater(boolean isRandomAge, Field field, long cell, boolean isMale, double breedingProbability, int maxLitterSize, int maxAge, int breedingAge,
                     double infectedProbability) {
-        super(isRandomAge, field, location, isMale, breedingProbability, maxLitterSize, maxAge, breedingAge, infectedProbability);
+        super(isRandomAge, field, cell, isMale, breedingProbability, maxLitterSize, maxAge, breedingAge, infectedProbability);
     }
 
     /**
@@ -48,24 +48,19 @@ public abstract class DayEater extends Eater {
         incrementAge();
         incrementHunger();
         if(isAlive()) {
-            Field currentField = getField();
-            List<Location> adjacent = currentField.adjacentLocations(getLocation());
-            giveBirth(newOrganisms, adjacent);
-            // Infects other animals in close vicinity
-            if(isInfected())
-                getInfector().infect(this, getField().adjacentLocations(getLocation()), getField());
+            giveBirth(newOrganisms);
             findFood();
             // Try to move into a free location if daytime
             if(this.isNight()) {
                 return;
             }
-            Location newLocation = getField().freeAdjacentLocation(getLocation());
-            if(newLocation != null) {
-                setLocation(newLocation);
+            long newCell = getField().freeAdjacentIndex(getCell());
+            if(newCell >= 0) {
+                setCell(newCell);
             }
             else {
                 // Overcrowding.
-                setDead();
+                setDead(DeathCause.OVERCROWDING);
             }
         }
     }
@@ -1,12 +1,12 @@
 package animals.prey.day_eaters;
 
 import animals.Organism;
+import animals.OrganismCreator;
 import animals.prey.Plant;
 import field.Field;
-import field.Location;
+import field.SpeciesRegistry;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * A simple model of a deer.
@@ -30,8 +30,13 @@ public class Deer extends DayEater {
     private static final int MAX_LITTER_SIZE = 4;
     // The food value of deers
     private static final int DEER_FOOD_VALUE = 18;
+    // Creates a newborn deer; shared by all deers.
+    private static final OrganismCreator CREATOR = (field, cell, isMale) -> new Deer(false, field, cell, isMale);
 
-    private Random random;
+    static {
+        // The species a deer can eat.
+        SpeciesRegistry.setDiet(Deer.class, Plant.class);
+    }
 
     /**
      * Create a new deer. A deer may be created with age
@@ -39,23 +44,11 @@ public class Deer extends DayEater {
      *
      * @param randomAge If true, the deer will have a random age.
      * @param field     The field currently occupied.
-     * @param location  The location within the field.
+     * @param cell      The index of the cell within the field.
      */
-    public Deer(boolean randomAge, Field field, Location location, boolean isMale) {
-        super(randomAge, field, location, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
+    public Deer(boolean randomAge, Field field, long cell, boolean isMale) {
+        super(randomAge, field, cell, isMale, BREEDING_PROBABILITY, MAX_LITTER_SIZE, MAX_AGE, BREEDING_AGE,
                 INFECTED_PROBABILITY);
-        random = new Random();
-    }
-
-    /**
-     * The deer can eat only plants
-     *
-     * @param organism organism which is passed by the Eater class
-     * @return true if the organism is a Plant
-     */
-    @Override
-    protected boolean canEatCreature(Object organism) {
-        return organism instanceof Plant;
     }
 
     /**
@@ -68,18 +61,9 @@ public class Deer extends DayEater {
 
     /**
      * @param newDeers list of
-     * @param adjacentLocations
      */
     @Override
-    protected void giveBirth(List<Organism> newDeers, List<Location> adjacentLocations) {
-        // We get all adjacent locations and check if the animals is able to give a birth
-        // with some organism near it
-        for (Location where : adjacentLocations) {
-            Object organism = getField().getObjectAt(where);
-            if (organism instanceof Deer && ((Deer) organism).isMale() != this.isMale()) {
-                // super.giveBirth calls the method inside Organism which gives birth
-                super.giveBirth(newDeers, (field, location) -> new Deer(false, field, location, random.nextBoolean()));
-            }
-        }
+    protected void giveBirth(List<Organism> newDeers) {
+        breedWithNeighbours(newDeers, CREATOR, true);
     }
 }
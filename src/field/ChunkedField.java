@@ -0,0 +1,484 @@
+package field;
+
+/**
+ * A field for very large, sparsely populated grids.
+ *
+ * The grid is divided into square chunks of 64 by 64 cells, which are
+ * only allocated while at least one of their cells is occupied, so the
+ * memory used grows with the number of occupied chunks rather than with
+ * the area of the field. Chunks are found through a hash table keyed by
+ * their position, and each chunk row fits in a single 64 bit word of the
+ * chunk's occupancy and species bitmaps.
+ *
+ * Neighbour queries for cells inside a chunk read bit windows from the
+ * chunk; cells on the border of a chunk look their neighbours up one by
+ * one, which crosses into the adjacent chunks.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.26
+ */
+public class ChunkedField extends Field
+{
+    // The number of bits needed for a position within a chunk.
+    private static final int CHUNK_SHIFT = 6;
+    // The width and depth of a chunk.
+    private static final int CHUNK_SIDE = 1 << CHUNK_SHIFT;
+    // The mask giving a position within a chunk.
+    private static final int CHUNK_MASK = CHUNK_SIDE - 1;
+
+    // The number of chunks across the width of the field.
+    private long chunkCols;
+    // The allocated chunks, keyed by chunk row * chunkCols + chunk column.
+    private ChunkTable chunks;
+    // The most recently used chunk and its key, as most lookups repeat.
+    private long lastKey;
+    private Chunk lastChunk;
+
+    /**
+     * Represent a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public ChunkedField(int depth, int width)
+    {
+        super(depth, width);
+        chunkCols = (width + CHUNK_MASK) >>> CHUNK_SHIFT;
+        chunks = new ChunkTable();
+        lastKey = -1;
+    }
+
+    /**
+     * Empty the field.
+     */
+    @Override
+    public void clear()
+    {
+        chunks = new ChunkTable();
+        lastKey = -1;
+        lastChunk = null;
+        populationsCleared();
+    }
+
+    /**
+     * Clear the given cell. A chunk left empty is released.
+     * @param index The index of the cell to clear.
+     */
+    @Override
+    public void clear(long index)
+    {
+        int row = rowOf(index);
+        int col = colOf(index);
+        long key = keyOf(row, col);
+        Chunk chunk = find(key);
+        int code = chunk == null ? SpeciesRegistry.EMPTY : chunk.remove(localIndex(row, col));
+        if(code != SpeciesRegistry.EMPTY) {
+            speciesRemoved(code);
+            if(chunk.population == 0) {
+                chunks.remove(key);
+                if(lastKey == key) {
+                    lastKey = -1;
+                    lastChunk = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Place an animal in the given cell.
+     * If there is already an animal in the cell it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param index The index of the cell.
+     */
+    @Override
+    public void place(Object animal, long index)
+    {
+        if(animal == null) {
+            clear(index);
+            return;
+        }
+        int row = rowOf(index);
+        int col = colOf(index);
+        long key = keyOf(row, col);
+        Chunk chunk = find(key);
+        if(chunk == null) {
+            chunk = new Chunk();
+            chunks.put(key, chunk);
+            lastKey = key;
+            lastChunk = chunk;
+        }
+        int local = localIndex(row, col);
+        int previous = chunk.remove(local);
+        if(previous != SpeciesRegistry.EMPTY) {
+            speciesRemoved(previous);
+        }
+        int code = SpeciesRegistry.codeOf(animal.getClass());
+        chunk.add(local, animal, code);
+        speciesAdded(code);
+    }
+
+    /**
+     * Move the animal in one cell to another cell. If there is
+     * already an animal in the destination it will be lost.
+     * @param from The index of the cell to move from.
+     * @param to The index of the cell to move to.
+     */
+    @Override
+    public void move(long from, long to)
+    {
+        if(from != to) {
+            // Place before clearing, so a chunk is not released and
+            // allocated again when an animal moves within it.
+            place(getObjectAt(from), to);
+            clear(from);
+        }
+    }
+
+    /**
+     * Return the animal in the given cell, if any.
+     * @param index The index of the cell.
+     * @return The animal in the cell, or null if there is none.
+     */
+    @Override
+    public Object getObjectAt(long index)
+    {
+        int row = rowOf(index);
+        int col = colOf(index);
+        Chunk chunk = find(keyOf(row, col));
+        return chunk == null ? null : chunk.occupants[localIndex(row, col)];
+    }
+
+    /**
+     * Return the species code of the animal in the given cell.
+     * @param index The index of the cell.
+     * @return The species code, or SpeciesRegistry.EMPTY if the cell is empty.
+     */
+    @Override
+    public int getSpeciesAt(long index)
+    {
+        return speciesAt(rowOf(index), colOf(index));
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an empty cell within the field.
+     * @param index The index of the cell.
+     * @return The mask of free directions.
+     */
+    @Override
+    public int freeAdjacentMask(long index)
+    {
+        int row = rowOf(index);
+        int col = colOf(index);
+        int mask = adjacentMask(row, col);
+        if(isInterior(row, col)) {
+            Chunk chunk = find(keyOf(row, col));
+            return chunk == null ? mask : mask & ~chunk.neighbourBits(chunk.occupied, row, col);
+        }
+        return mask & ~borderBits(row, col, mask, -1L);
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an animal of one of the given species.
+     * @param index The index of the cell.
+     * @param speciesSet A set of species codes, bit c standing for code c.
+     * @return The mask of directions holding one of the species.
+     */
+    @Override
+    public int adjacentSpeciesMask(long index, long speciesSet)
+    {
+        int row = rowOf(index);
+        int col = colOf(index);
+        int mask = adjacentMask(row, col);
+        if(isInterior(row, col)) {
+            Chunk chunk = find(keyOf(row, col));
+            if(chunk == null) {
+                return 0;
+            }
+            int bits = 0;
+            for(long set = speciesSet; set != 0; set &= set - 1) {
+                long[] rows = chunk.speciesRows[Long.numberOfTrailingZeros(set)];
+                if(rows != null) {
+                    bits |= chunk.neighbourBits(rows, row, col);
+                }
+            }
+            return bits & mask;
+        }
+        return borderBits(row, col, mask, speciesSet & ~1L);
+    }
+
+    /**
+     * Add the number of animals of each species in the field to
+     * the given totals, indexed by species code.
+     * @param totals The totals to add to.
+     */
+    @Override
+    public void countSpecies(int[] totals)
+    {
+        for(Chunk chunk : chunks.values) {
+            if(chunk != null) {
+                for(byte code : chunk.species) {
+                    totals[code]++;
+                }
+            }
+        }
+        totals[SpeciesRegistry.EMPTY] = 0;
+    }
+
+    /**
+     * @return The number of chunks currently allocated.
+     */
+    public int getChunkCount()
+    {
+        return chunks.size;
+    }
+
+    /**
+     * Look up the neighbours of a cell on the border of a chunk one by one.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param mask The directions that stay inside the field.
+     * @param speciesSet The species to look for, or -1 for any animal.
+     * @return The mask of directions holding one of the species.
+     */
+    private int borderBits(int row, int col, int mask, long speciesSet)
+    {
+        int bits = 0;
+        for(; mask != 0; mask &= mask - 1) {
+            int direction = Integer.numberOfTrailingZeros(mask);
+            int code = speciesAt(row + rowOffset(direction), col + colOffset(direction));
+            if(code != SpeciesRegistry.EMPTY && (speciesSet & (1L << code)) != 0) {
+                bits |= 1 << direction;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Return the species code of the animal at a position.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The species code, or SpeciesRegistry.EMPTY.
+     */
+    private int speciesAt(int row, int col)
+    {
+        Chunk chunk = find(keyOf(row, col));
+        return chunk == null ? SpeciesRegistry.EMPTY : chunk.species[localIndex(row, col)];
+    }
+
+    /**
+     * Return whether all the neighbours of a cell lie in its own chunk.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if the cell is not on the border of its chunk.
+     */
+    private boolean isInterior(int row, int col)
+    {
+        int localRow = row & CHUNK_MASK;
+        int localCol = col & CHUNK_MASK;
+        return localRow != 0 && localRow != CHUNK_MASK && localCol != 0 && localCol != CHUNK_MASK;
+    }
+
+    /**
+     * Return the chunk with the given key, if it is allocated.
+     * @param key The key of the chunk.
+     * @return The chunk, or null.
+     */
+    private Chunk find(long key)
+    {
+        if(key != lastKey) {
+            Chunk chunk = chunks.get(key);
+            if(chunk == null) {
+                return null;
+            }
+            lastKey = key;
+            lastChunk = chunk;
+        }
+        return lastChunk;
+    }
+
+    /**
+     * Return the key of the chunk holding a position.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The key of the chunk.
+     */
+    private long keyOf(int row, int col)
+    {
+        return (row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Return the index of a position within its chunk.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index within the chunk.
+     */
+    private static int localIndex(int row, int col)
+    {
+        return (row & CHUNK_MASK) << CHUNK_SHIFT | (col & CHUNK_MASK);
+    }
+
+    /**
+     * A square block of cells, with bitmaps holding one word per row.
+     */
+    private static class Chunk
+    {
+        // The animal in each cell.
+        final Object[] occupants = new Object[CHUNK_SIDE * CHUNK_SIDE];
+        // The species code of each cell.
+        final byte[] species = new byte[CHUNK_SIDE * CHUNK_SIDE];
+        // One word per row, with a bit set for each occupied cell.
+        final long[] occupied = new long[CHUNK_SIDE];
+        // The rows of each species, created when the species first appears.
+        final long[][] speciesRows = new long[SpeciesRegistry.MAX_SPECIES + 1][];
+        // The number of occupied cells.
+        int population;
+
+        /**
+         * Put an animal into an empty cell of the chunk.
+         */
+        void add(int local, Object animal, int code)
+        {
+            occupants[local] = animal;
+            species[local] = (byte) code;
+            long bit = 1L << local;
+            occupied[local >>> CHUNK_SHIFT] |= bit;
+            if(speciesRows[code] == null) {
+                speciesRows[code] = new long[CHUNK_SIDE];
+            }
+            speciesRows[code][local >>> CHUNK_SHIFT] |= bit;
+            population++;
+        }
+
+        /**
+         * Empty a cell of the chunk.
+         * @return The species code of the animal removed, or EMPTY if there was none.
+         */
+        int remove(int local)
+        {
+            int code = species[local];
+            if(code == SpeciesRegistry.EMPTY) {
+                return code;
+            }
+            long bit = 1L << local;
+            occupied[local >>> CHUNK_SHIFT] &= ~bit;
+            speciesRows[code][local >>> CHUNK_SHIFT] &= ~bit;
+            occupants[local] = null;
+            species[local] = 0;
+            population--;
+            return code;
+        }
+
+        /**
+         * Gather the bits around an interior cell into a direction mask.
+         */
+        int neighbourBits(long[] rows, int row, int col)
+        {
+            int localRow = row & CHUNK_MASK;
+            int shift = (col & CHUNK_MASK) - 1;
+            return directionBits((int) (rows[localRow - 1] >>> shift) & 7,
+                                 (int) (rows[localRow] >>> shift) & 7,
+                                 (int) (rows[localRow + 1] >>> shift) & 7);
+        }
+    }
+
+    /**
+     * A hash table from chunk keys to chunks, using open addressing so
+     * that lookups do not box their keys.
+     */
+    private static class ChunkTable
+    {
+        // The keys of the slots; only meaningful where values is not null.
+        long[] keys = new long[16];
+        // The chunks of the slots, or null for an empty slot.
+        Chunk[] values = new Chunk[16];
+        // The number of chunks in the table.
+        int size;
+
+        /**
+         * Return the chunk with the given key, or null.
+         */
+        Chunk get(long key)
+        {
+            for(int slot = slotOf(key); values[slot] != null; slot = (slot + 1) & (keys.length - 1)) {
+                if(keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add a chunk under a key that is not in the table.
+         */
+        void put(long key, Chunk chunk)
+        {
+            if(2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int slot = slotOf(key);
+            while(values[slot] != null) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            values[slot] = chunk;
+            size++;
+        }
+
+        /**
+         * Remove the chunk with the given key, shifting back any entries
+         * that probed past it.
+         */
+        void remove(long key)
+        {
+            int mask = keys.length - 1;
+            int slot = slotOf(key);
+            while(values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if(values[slot] == null) {
+                return;
+            }
+            values[slot] = null;
+            size--;
+            for(int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = slotOf(keys[next]);
+                // Move the entry back if its home is not between the hole and it.
+                if(((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    values[next] = null;
+                    slot = next;
+                }
+            }
+        }
+
+        /**
+         * Double the capacity of the table.
+         */
+        private void grow()
+        {
+            long[] oldKeys = keys;
+            Chunk[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Chunk[oldValues.length * 2];
+            size = 0;
+            for(int slot = 0; slot < oldKeys.length; slot++) {
+                if(oldValues[slot] != null) {
+                    put(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+
+        /**
+         * Return the home slot of a key.
+         */
+        private int slotOf(long key)
+        {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 40) & (keys.length - 1);
+        }
+    }
+}
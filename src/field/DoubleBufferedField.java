@@ -0,0 +1,353 @@
+package field;
+
+import java.util.Arrays;
+
+/**
+ * A field that keeps two grids: the current one, as it was at the start
+ * of the step, and the next one, which is being built. Everything read
+ * during a step comes from the current grid and every change goes to the
+ * next one, so what an animal sees does not depend on which animals
+ * acted before it, and the current grid can be drawn while a step runs.
+ *
+ * Two animals may claim the same cell during a step, for instance by
+ * moving into it or being born into it. The later claim takes the cell
+ * for the time being and the earlier claimant is remembered. When the
+ * step finishes the claims are settled: the occupant whose claim has the
+ * lowest key (see Occupant) keeps the cell and the others are told they
+ * lost it. Then the grids are swapped. Only the cells changed during the
+ * step are copied across to bring the new next grid up to date.
+ *
+ * Changes are logged row by row, so rows far enough apart can be updated
+ * from different threads at once, as with GridField.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class DoubleBufferedField extends Field
+{
+    // The grid as it was at the start of the step, and the one being built.
+    private GridField current, next;
+    // The step each cell was last changed in, and last claimed in.
+    private int[] changedIn, claimedIn;
+    // The changes made to each row during the step; created when first needed.
+    private RowLog[] logs;
+    // The number of the current step, counting from 1.
+    private int epoch;
+    // Whether the claims are being settled.
+    private boolean settling;
+
+    /**
+     * Represent a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public DoubleBufferedField(int depth, int width)
+    {
+        super(depth, width);
+        current = new GridField(depth, width);
+        next = new GridField(depth, width);
+        changedIn = new int[depth * width];
+        claimedIn = new int[depth * width];
+        logs = new RowLog[depth];
+        epoch = 1;
+    }
+
+    /**
+     * Empty both grids.
+     */
+    @Override
+    public void clear()
+    {
+        current.clear();
+        next.clear();
+        populationsCleared();
+        Arrays.fill(changedIn, 0);
+        Arrays.fill(claimedIn, 0);
+        Arrays.fill(logs, null);
+        epoch = 1;
+    }
+
+    /**
+     * Clear the given cell of the next grid.
+     * @param index The index of the cell to clear.
+     */
+    @Override
+    public void clear(long index)
+    {
+        changed(index);
+        next.clear(index);
+    }
+
+    /**
+     * Clear the given cell of the next grid if it holds the given
+     * animal. An animal that has been displaced from the cell by a
+     * later claim is not there to be cleared.
+     * @param index The index of the cell to clear.
+     * @param animal The animal expected in the cell.
+     */
+    @Override
+    public void clear(long index, Object animal)
+    {
+        if(next.getObjectAt(index) == animal) {
+            clear(index);
+        }
+    }
+
+    /**
+     * Place an animal in the given cell of the next grid. If another
+     * animal has claimed the cell during this step the claims are
+     * settled when the step finishes; any other animal in the cell
+     * is lost.
+     * @param animal The animal to be placed.
+     * @param index The index of the cell.
+     */
+    @Override
+    public void place(Object animal, long index)
+    {
+        if(animal != null) {
+            claim(index);
+        }
+        changed(index);
+        next.place(animal, index);
+    }
+
+    /**
+     * Move the animal in one cell of the next grid to another cell,
+     * claiming it as place does.
+     * @param from The index of the cell to move from.
+     * @param to The index of the cell to move to.
+     */
+    @Override
+    public void move(long from, long to)
+    {
+        if(from != to) {
+            claim(to);
+            changed(from);
+            changed(to);
+            next.move(from, to);
+        }
+    }
+
+    /**
+     * Return the animal in the given cell of the current grid, if any.
+     * @param index The index of the cell.
+     * @return The animal in the cell, or null if there is none.
+     */
+    @Override
+    public Object getObjectAt(long index)
+    {
+        return current.getObjectAt(index);
+    }
+
+    /**
+     * Return the species code of the animal in the given cell of the
+     * current grid.
+     * @param index The index of the cell.
+     * @return The species code, or SpeciesRegistry.EMPTY if the cell is empty.
+     */
+    @Override
+    public int getSpeciesAt(long index)
+    {
+        return current.getSpeciesAt(index);
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an empty cell of the current grid.
+     * @param index The index of the cell.
+     * @return The mask of free directions.
+     */
+    @Override
+    public int freeAdjacentMask(long index)
+    {
+        return current.freeAdjacentMask(index);
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an animal of one of the given species in the current grid.
+     * @param index The index of the cell.
+     * @param speciesSet A set of species codes, bit c standing for code c.
+     * @return The mask of directions holding one of the species.
+     */
+    @Override
+    public int adjacentSpeciesMask(long index, long speciesSet)
+    {
+        return current.adjacentSpeciesMask(index, speciesSet);
+    }
+
+    /**
+     * Add the number of animals of each species in the current grid to
+     * the given totals, indexed by species code.
+     * @param totals The totals to add to.
+     */
+    @Override
+    public void countSpecies(int[] totals)
+    {
+        current.countSpecies(totals);
+    }
+
+    /**
+     * Return the number of animals of a species in the current grid.
+     * @param code The species code.
+     * @return The number of animals of the species.
+     */
+    @Override
+    public int getPopulation(int code)
+    {
+        return current.getPopulation(code);
+    }
+
+    /**
+     * Changes are logged per row, and both grids allow rows far enough
+     * apart to be updated from different threads at once.
+     * @return true.
+     */
+    @Override
+    public boolean supportsConcurrentRows()
+    {
+        return true;
+    }
+
+    /**
+     * Settle the claims made during the step, then make the next grid
+     * the current one.
+     */
+    @Override
+    public void stepFinished()
+    {
+        settling = true;
+        for(int row = 0; row < logs.length; row++) {
+            RowLog log = logs[row];
+            if(log != null) {
+                for(int k = 0; k < log.claimCount; k++) {
+                    settle(indexOf(row, log.claimCols[k]), log.claimants[k]);
+                    log.claimants[k] = null;
+                }
+                log.claimCount = 0;
+            }
+        }
+        settling = false;
+
+        GridField built = next;
+        next = current;
+        current = built;
+        // Bring the new next grid up to date with the changed cells.
+        for(int row = 0; row < logs.length; row++) {
+            RowLog log = logs[row];
+            if(log != null) {
+                for(int k = 0; k < log.changeCount; k++) {
+                    long index = indexOf(row, log.changedCols[k]);
+                    next.place(current.getObjectAt(index), index);
+                }
+                log.changeCount = 0;
+            }
+        }
+        epoch++;
+    }
+
+    /**
+     * Decide between the animal holding a cell of the next grid and an
+     * earlier claimant that it displaced. Animals that have since moved
+     * on or died no longer count.
+     * @param index The index of the cell.
+     * @param claimant The displaced claimant.
+     */
+    private void settle(long index, Object claimant)
+    {
+        Object holder = next.getObjectAt(index);
+        boolean holderStays = holder instanceof Occupant && ((Occupant) holder).getCell() == index;
+        boolean claimantStays = claimant instanceof Occupant && ((Occupant) claimant).getCell() == index;
+        if(!claimantStays) {
+            return;
+        }
+        if(holderStays && ((Occupant) holder).getClaimKey() < ((Occupant) claimant).getClaimKey()) {
+            ((Occupant) claimant).claimLost(index);
+        }
+        else {
+            next.place(claimant, index);
+            if(holderStays) {
+                ((Occupant) holder).claimLost(index);
+            }
+        }
+    }
+
+    /**
+     * Record a claim to a cell of the next grid, remembering the animal
+     * it displaces if the cell has already been claimed this step.
+     * @param index The index of the cell.
+     */
+    private void claim(long index)
+    {
+        if(settling) {
+            return;
+        }
+        int cell = (int) index;
+        if(claimedIn[cell] == epoch) {
+            Object displaced = next.getObjectAt(index);
+            if(displaced != null) {
+                logOf(rowOf(index)).addClaim(colOf(index), displaced);
+            }
+        }
+        claimedIn[cell] = epoch;
+    }
+
+    /**
+     * Record that a cell of the next grid has changed this step.
+     * @param index The index of the cell.
+     */
+    private void changed(long index)
+    {
+        int cell = (int) index;
+        if(changedIn[cell] != epoch) {
+            changedIn[cell] = epoch;
+            logOf(rowOf(index)).addChange(colOf(index));
+        }
+    }
+
+    /**
+     * Return the log of a row, creating it if needed.
+     * @param row The row.
+     * @return The log of the row.
+     */
+    private RowLog logOf(int row)
+    {
+        RowLog log = logs[row];
+        if(log == null) {
+            log = new RowLog();
+            logs[row] = log;
+        }
+        return log;
+    }
+
+    /**
+     * The cells of a row changed during a step, and the claimants
+     * displaced from cells of the row.
+     */
+    private static class RowLog
+    {
+        int[] changedCols = new int[8];
+        int changeCount;
+        int[] claimCols = new int[4];
+        Object[] claimants = new Object[4];
+        int claimCount;
+
+        void addChange(int col)
+        {
+            if(changeCount == changedCols.length) {
+                changedCols = Arrays.copyOf(changedCols, changeCount * 2);
+            }
+            changedCols[changeCount++] = col;
+        }
+
+        void addClaim(int col, Object claimant)
+        {
+            if(claimCount == claimCols.length) {
+                claimCols = Arrays.copyOf(claimCols, claimCount * 2);
+                claimants = Arrays.copyOf(claimants, claimCount * 2);
+            }
+            claimCols[claimCount] = col;
+            claimants[claimCount++] = claimant;
+        }
+    }
+}
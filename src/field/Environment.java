@@ -0,0 +1,346 @@
+package field;
+
+import utils.CounterRandom;
+
+import java.util.Arrays;
+
+/**
+ * The time of day and the weather over a field, which the animals read
+ * by the index of their cell when they need them, instead of being told
+ * every step.
+ *
+ * The weather is either uniform, raining on the whole field or none of
+ * it, with rain and dry spells of random length; or regional. Regional
+ * weather is kept over a coarse grid of square blocks of cells: storms
+ * form over the wetter ground of a fixed moisture map, drift across the
+ * field, rain on the blocks under them for a while and blow over. The
+ * storms are worked out afresh each step from the seed of the run and
+ * the step alone, so they need not be saved with the simulation.
+ *
+ * Plants age only in the rain, so each block keeps a rain clock, the
+ * number of steps it has rained on it, which they read their age off.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class Environment
+{
+    // The number of steps between changes of the time of day.
+    private static final int DAY_LENGTH = 20;
+    // The length of the first spells of uniform weather, and the most a
+    // spell can last.
+    private static final int INITIAL_RAIN_TIME = 15;
+    private static final int MAX_RAIN_TIME = 15;
+    // The smallest side of a block, as a power of two, and the most blocks.
+    private static final int MIN_BLOCK_SHIFT = 4;
+    private static final int MAX_BLOCKS = 1 << 16;
+    // The number of blocks of field for each storm.
+    private static final int BLOCKS_PER_STORM = 24;
+    // The steps from a storm forming to the next forming in its place.
+    private static final int STORM_LIFETIME = 40;
+    // The number of tries at forming a storm over wet ground.
+    private static final int STORM_TRIES = 4;
+
+    // The width of the field.
+    private final int width;
+    // The side of a block as a power of two, and the rows and columns of blocks.
+    private final int blockShift;
+    private final int blockRows, blockCols;
+    // Whether it is night.
+    private boolean isNight;
+    // Whether it is raining anywhere, and for uniform weather the
+    // length of the current spell.
+    private boolean isRaining;
+    private int rainTime;
+    // The rain clock of uniform weather.
+    private long rainClock;
+    // Whether the weather is regional, and whether it is to be from the
+    // next reset or restore.
+    private boolean regional;
+    private boolean regionalRequested;
+    // For regional weather, by block: whether it is raining, the rain
+    // clock and the moisture of the ground, from 0 to 1.
+    private boolean[] raining;
+    private long[] rainClocks;
+    private double[] moisture;
+
+    /**
+     * Create the environment of a field of the given size, with uniform
+     * weather, dry and in daylight.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public Environment(int depth, int width)
+    {
+        this.width = width;
+        int shift = MIN_BLOCK_SHIFT;
+        while((long) blocksAlong(depth, shift) * blocksAlong(width, shift) > MAX_BLOCKS) {
+            shift++;
+        }
+        blockShift = shift;
+        blockRows = blocksAlong(depth, shift);
+        blockCols = blocksAlong(width, shift);
+        rainTime = INITIAL_RAIN_TIME;
+    }
+
+    /**
+     * Choose between uniform and regional weather, from the next reset
+     * or restore on.
+     * @param regional Whether the weather is to be regional.
+     */
+    public void setRegional(boolean regional)
+    {
+        regionalRequested = regional;
+    }
+
+    /**
+     * @return Whether the weather is regional.
+     */
+    public boolean isRegional()
+    {
+        return regional;
+    }
+
+    /**
+     * @return Whether it is night.
+     */
+    public boolean isNight()
+    {
+        return isNight;
+    }
+
+    /**
+     * @return Whether it is raining anywhere on the field.
+     */
+    public boolean isRaining()
+    {
+        return isRaining;
+    }
+
+    /**
+     * Return whether it is raining on the given cell.
+     * @param index The index of the cell.
+     * @return true if it is raining there.
+     */
+    public boolean isRaining(long index)
+    {
+        return regional ? raining[blockOf(index)] : isRaining;
+    }
+
+    /**
+     * Return the number of steps it has rained on the given cell so far.
+     * Only differences between readings at the same cell mean anything.
+     * @param index The index of the cell.
+     * @return The reading of the rain clock at the cell.
+     */
+    public long getRainClock(long index)
+    {
+        return regional ? rainClocks[blockOf(index)] : rainClock;
+    }
+
+    /**
+     * Return the moisture of the ground at the given cell. The ground is
+     * evenly wet under uniform weather.
+     * @param index The index of the cell.
+     * @return The moisture, from 0 for the driest to 1 for the wettest.
+     */
+    public double getMoisture(long index)
+    {
+        return regional ? moisture[blockOf(index)] : 1;
+    }
+
+    /**
+     * @return The length of the current spell of uniform weather, to be
+     *         saved and given back to restore.
+     */
+    public int getRainTime()
+    {
+        return rainTime;
+    }
+
+    /**
+     * Go back to the start of a run: daylight and dry, with the moisture
+     * map of regional weather drawn afresh.
+     * @param random The generator of the run.
+     */
+    public void reset(CounterRandom random)
+    {
+        restore(random, 0, false, false, INITIAL_RAIN_TIME);
+    }
+
+    /**
+     * Put the environment back in the state it was saved in. The regional
+     * weather is worked out again from the step.
+     * @param random The generator of the run.
+     * @param step The step.
+     * @param isNight Whether it is night.
+     * @param isRaining Whether it is raining, for uniform weather.
+     * @param rainTime The length of the current spell of uniform weather.
+     */
+    public void restore(CounterRandom random, int step, boolean isNight, boolean isRaining, int rainTime)
+    {
+        this.isNight = isNight;
+        this.isRaining = isRaining;
+        this.rainTime = rainTime;
+        regional = regionalRequested;
+        if(regional) {
+            int blocks = blockRows * blockCols;
+            if(raining == null) {
+                raining = new boolean[blocks];
+                rainClocks = new long[blocks];
+                moisture = new double[blocks];
+            }
+            drawMoisture(random);
+            rainOn(step, random);
+        }
+    }
+
+    /**
+     * Move on to the given step: change the time of day every DAY_LENGTH
+     * steps and let the weather change. Called before any animal acts
+     * in the step, so the rain clocks count the step if it rains.
+     * @param step The step about to be taken.
+     * @param random The generator of the run.
+     */
+    public void update(int step, CounterRandom random)
+    {
+        if(step % DAY_LENGTH == 0) {
+            isNight = !isNight;
+        }
+        if(regional) {
+            rainOn(step, random);
+            for(int block = 0; block < raining.length; block++) {
+                if(raining[block]) {
+                    rainClocks[block]++;
+                }
+            }
+            return;
+        }
+        // Rains for given raintime
+        if(step % rainTime == 0) {
+            isRaining = !isRaining;
+            if(!isRaining) {
+                random.at(step, -1, CounterRandom.WEATHER);
+                do {
+                    // rain time is random
+                    rainTime = random.nextInt(MAX_RAIN_TIME);
+                }
+                while(rainTime == 0);// prevents zero division error
+            }
+        }
+        if(isRaining) {
+            rainClock++;
+        }
+    }
+
+    /**
+     * Work out which blocks it rains on in the given step. Each storm
+     * is drawn anew every STORM_LIFETIME steps, the storms out of step
+     * with each other: where it forms, how it drifts, how big it is and
+     * for how many steps it rains.
+     * @param step The step.
+     * @param random The generator of the run.
+     */
+    private void rainOn(int step, CounterRandom random)
+    {
+        Arrays.fill(raining, false);
+        isRaining = false;
+        int blocks = raining.length;
+        int storms = Math.max(1, blocks / BLOCKS_PER_STORM);
+        int blockSize = 1 << blockShift;
+        for(int storm = 0; storm < storms; storm++) {
+            int offset = storm * STORM_LIFETIME / storms;
+            int life = Math.floorDiv(step + offset, STORM_LIFETIME);
+            int age = step + offset - life * STORM_LIFETIME;
+            random.at(life, storm, CounterRandom.STORMS);
+            int block = random.nextInt(blocks);
+            for(int tries = 1; tries < STORM_TRIES && random.nextDouble() >= moisture[block]; tries++) {
+                block = random.nextInt(blocks);
+            }
+            int duration = STORM_LIFETIME / 4 + random.nextInt(STORM_LIFETIME / 2);
+            double radius = blockSize * (1.5 + 1.5 * random.nextDouble());
+            double rowDrift = blockSize * (random.nextDouble() - 0.5) / 4;
+            double colDrift = blockSize * (random.nextDouble() - 0.5) / 4;
+            if(age >= duration) {
+                continue;
+            }
+            double row = ((block / blockCols) + 0.5) * blockSize + rowDrift * age;
+            double col = ((block % blockCols) + 0.5) * blockSize + colDrift * age;
+            int top = Math.max(0, (int) Math.floor((row - radius) / blockSize));
+            int bottom = Math.min(blockRows - 1, (int) Math.floor((row + radius) / blockSize));
+            int left = Math.max(0, (int) Math.floor((col - radius) / blockSize));
+            int right = Math.min(blockCols - 1, (int) Math.floor((col + radius) / blockSize));
+            for(int r = top; r <= bottom; r++) {
+                for(int c = left; c <= right; c++) {
+                    double dr = (r + 0.5) * blockSize - row;
+                    double dc = (c + 0.5) * blockSize - col;
+                    if(dr * dr + dc * dc <= radius * radius) {
+                        raining[r * blockCols + c] = true;
+                        isRaining = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw the moisture map: random values for the blocks, smoothed
+     * into wet and dry regions and stretched from 0 to 1.
+     * @param random The generator of the run.
+     */
+    private void drawMoisture(CounterRandom random)
+    {
+        for(int block = 0; block < moisture.length; block++) {
+            moisture[block] = random.at(0, block, CounterRandom.TERRAIN).nextDouble();
+        }
+        double[] smoothed = new double[moisture.length];
+        for(int pass = 0; pass < 2; pass++) {
+            for(int r = 0; r < blockRows; r++) {
+                for(int c = 0; c < blockCols; c++) {
+                    double sum = 0;
+                    int count = 0;
+                    for(int nr = Math.max(0, r - 1); nr <= Math.min(blockRows - 1, r + 1); nr++) {
+                        for(int nc = Math.max(0, c - 1); nc <= Math.min(blockCols - 1, c + 1); nc++) {
+                            sum += moisture[nr * blockCols + nc];
+                            count++;
+                        }
+                    }
+                    smoothed[r * blockCols + c] = sum / count;
+                }
+            }
+            System.arraycopy(smoothed, 0, moisture, 0, moisture.length);
+        }
+        double min = 1;
+        double max = 0;
+        for(double value : moisture) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        for(int block = 0; block < moisture.length; block++) {
+            moisture[block] = max > min ? (moisture[block] - min) / (max - min) : 1;
+        }
+    }
+
+    /**
+     * Return the block holding the given cell.
+     * @param index The index of the cell.
+     * @return The index of the block.
+     */
+    private int blockOf(long index)
+    {
+        int row = (int) (index / width);
+        int col = (int) (index - (long) row * width);
+        return (row >> blockShift) * blockCols + (col >> blockShift);
+    }
+
+    /**
+     * Return the number of blocks needed to cover a length of cells.
+     * @param cells The number of cells.
+     * @param shift The side of a block as a power of two.
+     * @return The number of blocks.
+     */
+    private static int blocksAlong(int cells, int shift)
+    {
+        return (int) (((long) cells + (1L << shift) - 1) >> shift);
+    }
+}
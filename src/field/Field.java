@@ -2,62 +2,323 @@ package field;
 
 import utils.Randomizer;
 
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal.
- * 
+ *
+ * Positions can be addressed either with Location objects or with
+ * packed 64 bit cell indices (row * width + col). The index based methods
+ * never allocate: the neighbours of a cell are described by a bit mask
+ * of the eight directions around it, and are visited through
+ * precomputed offset tables.
+ *
+ * How the cells are stored is left to subclasses: GridField keeps flat
+ * arrays covering the whole grid, ChunkedField only allocates the
+ * parts of a very large grid that are occupied, OffHeapField keeps
+ * its cells outside the Java heap, and DoubleBufferedField keeps the
+ * grid as it was at the start of a step apart from the one being built.
+ *
+ * Every field keeps a live count of the animals of each species, updated
+ * by subclasses as animals are placed and cleared, so that population
+ * figures never need a pass over the grid.
+ *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
-public class Field
+public abstract class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
-    
+    // The number of directions around a cell.
+    public static final int DIRECTIONS = 8;
+    // Flags describing the state of an occupant, see updateState.
+    public static final int FLAG_INFECTED = 1, FLAG_HIDING = 2, FLAG_MALE = 4;
+
+    // Row and column offsets of each direction, row by row from the top left.
+    private static final int[] ROW_OFFSETS = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] COL_OFFSETS = {-1, 0, 1, -1, 1, -1, 0, 1};
+    // Bits describing which edges of the field a cell lies on.
+    private static final int TOP = 1, BOTTOM = 2, LEFT = 4, RIGHT = 8;
+    // The directions that stay inside the field, indexed by edge bits.
+    private static final int[] EDGE_MASKS = new int[16];
+    // Visiting orders of the directions: every start with every odd stride.
+    private static final int[][] VISIT_ORDERS = new int[DIRECTIONS * DIRECTIONS / 2][DIRECTIONS];
+
+    static {
+        for(int edges = 0; edges < EDGE_MASKS.length; edges++) {
+            int mask = 0;
+            for(int direction = 0; direction < DIRECTIONS; direction++) {
+                boolean outside = ((edges & TOP) != 0 && ROW_OFFSETS[direction] < 0)
+                        || ((edges & BOTTOM) != 0 && ROW_OFFSETS[direction] > 0)
+                        || ((edges & LEFT) != 0 && COL_OFFSETS[direction] < 0)
+                        || ((edges & RIGHT) != 0 && COL_OFFSETS[direction] > 0);
+                if(!outside) {
+                    mask |= 1 << direction;
+                }
+            }
+            EDGE_MASKS[edges] = mask;
+        }
+        for(int order = 0; order < VISIT_ORDERS.length; order++) {
+            int start = order % DIRECTIONS;
+            int stride = 2 * (order / DIRECTIONS) + 1;
+            for(int k = 0; k < DIRECTIONS; k++) {
+                VISIT_ORDERS[order][k] = (start + k * stride) % DIRECTIONS;
+            }
+        }
+    }
+
     // The depth and width of the field.
     private int depth, width;
-    // Storage for the animals.
-    private Object[][] field;
+    // The cell index offset of each direction.
+    private long[] indexOffsets;
+    // The number of animals of each species, indexed by species code.
+    private LongAdder[] populations;
+    // The number of infected animals of each species, kept by the animals.
+    private LongAdder[] infected;
+    // The time of day and the weather over the field.
+    private Environment environment;
+    // The plants of the field kept as a plant layer, or null.
+    private PlantLayer plantLayer;
 
     /**
      * Represent a field of the given dimensions.
      * @param depth The depth of the field.
      * @param width The width of the field.
      */
-    public Field(int depth, int width)
+    protected Field(int depth, int width)
     {
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
+        indexOffsets = new long[DIRECTIONS];
+        for(int direction = 0; direction < DIRECTIONS; direction++) {
+            indexOffsets[direction] = (long) ROW_OFFSETS[direction] * width + COL_OFFSETS[direction];
+        }
+        populations = new LongAdder[SpeciesRegistry.MAX_SPECIES + 1];
+        infected = new LongAdder[SpeciesRegistry.MAX_SPECIES + 1];
+        for(int code = 0; code < populations.length; code++) {
+            populations[code] = new LongAdder();
+            infected[code] = new LongAdder();
+        }
+        environment = new Environment(depth, width);
     }
-    
+
     /**
      * Empty the field.
      */
-    public void clear()
+    public abstract void clear();
+
+    /**
+     * Clear the given cell.
+     * @param index The index of the cell to clear.
+     */
+    public abstract void clear(long index);
+
+    /**
+     * Clear the given cell if it holds the given animal.
+     * @param index The index of the cell to clear.
+     * @param animal The animal expected in the cell.
+     */
+    public void clear(long index, Object animal)
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
-            }
+        if(getObjectAt(index) == animal) {
+            clear(index);
         }
     }
-    
+
+    /**
+     * Place an animal in the given cell.
+     * If there is already an animal in the cell it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param index The index of the cell.
+     */
+    public abstract void place(Object animal, long index);
+
+    /**
+     * Move the animal in one cell to another cell. If there is
+     * already an animal in the destination it will be lost.
+     * @param from The index of the cell to move from.
+     * @param to The index of the cell to move to.
+     */
+    public abstract void move(long from, long to);
+
+    /**
+     * Return the animal in the given cell, if any.
+     * @param index The index of the cell.
+     * @return The animal in the cell, or null if there is none.
+     */
+    public abstract Object getObjectAt(long index);
+
+    /**
+     * Return the species code of the animal in the given cell.
+     * @param index The index of the cell.
+     * @return The species code, or SpeciesRegistry.EMPTY if the cell is empty.
+     */
+    public abstract int getSpeciesAt(long index);
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an empty cell within the field.
+     * @param index The index of the cell.
+     * @return The mask of free directions.
+     */
+    public abstract int freeAdjacentMask(long index);
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an animal of one of the given species.
+     * @param index The index of the cell.
+     * @param speciesSet A set of species codes, bit c standing for code c.
+     * @return The mask of directions holding one of the species.
+     */
+    public abstract int adjacentSpeciesMask(long index, long speciesSet);
+
+    /**
+     * Add the number of animals of each species in the field to
+     * the given totals, indexed by species code. Unlike getPopulation
+     * this counts the cells themselves, so it takes a pass over the field.
+     * @param totals The totals to add to.
+     */
+    public abstract void countSpecies(int[] totals);
+
+    /**
+     * Return the number of animals of a species in the field.
+     * @param code The species code.
+     * @return The number of animals of the species.
+     */
+    public int getPopulation(int code)
+    {
+        return populations[code].intValue();
+    }
+
+    /**
+     * Return the number of infected animals of a species in the field.
+     * @param code The species code.
+     * @return The number of infected animals of the species.
+     */
+    public int getInfected(int code)
+    {
+        return infected[code].intValue();
+    }
+
+    /**
+     * Record that an animal in the field has been infected. The animals
+     * keep this count themselves, as only they know their state.
+     * @param code The species code of the animal.
+     */
+    public void infectedAdded(int code)
+    {
+        infected[code].increment();
+    }
+
+    /**
+     * Record that an infected animal has been cured or has left the field.
+     * @param code The species code of the animal.
+     */
+    public void infectedRemoved(int code)
+    {
+        infected[code].decrement();
+    }
+
+    /**
+     * Return the time of day and the weather over the field, which its
+     * animals read by their cell.
+     * @return The environment of the field.
+     */
+    public Environment getEnvironment()
+    {
+        return environment;
+    }
+
+    /**
+     * Return the plant layer holding the plants of the field, if the
+     * plants are kept as one rather than as organisms.
+     * @return The plant layer, or null if there is none.
+     */
+    public PlantLayer getPlantLayer()
+    {
+        return plantLayer;
+    }
+
+    /**
+     * Set the plant layer holding the plants of the field. Called by
+     * the layer as it is created.
+     * @param plantLayer The plant layer.
+     */
+    void setPlantLayer(PlantLayer plantLayer)
+    {
+        this.plantLayer = plantLayer;
+    }
+
+    /**
+     * Return whether the field can hold bare occupants (see placeBare).
+     * @return true if bare occupants can be placed.
+     */
+    public boolean supportsBareOccupants()
+    {
+        return false;
+    }
+
+    /**
+     * Fill a cell with a bare occupant: one with a species code but no
+     * object of its own, such as a plant of a plant layer. It counts
+     * towards the population of its species and takes up its cell like
+     * any other, but getObjectAt returns null for it.
+     * @param code The species code of the occupant.
+     * @param index The index of the cell, which must be empty.
+     * @throws UnsupportedOperationException If the field cannot hold
+     *         bare occupants.
+     */
+    public void placeBare(int code, long index)
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot hold bare occupants");
+    }
+
+    /**
+     * Return whether cells in rows far enough apart may be updated by
+     * different threads at the same time. This holds when each thread
+     * only reads and writes rows at least two rows away from those
+     * used by any other thread.
+     * @return true if such concurrent updates are safe.
+     */
+    public boolean supportsConcurrentRows()
+    {
+        return false;
+    }
+
+    /**
+     * Record the age and state flags of the animal in the given cell.
+     * Animals report changes here; fields that keep this state in their
+     * own storage override it, the others ignore it.
+     * @param index The index of the cell.
+     * @param age The age of the animal.
+     * @param flags A combination of the FLAG_ constants.
+     */
+    public void updateState(long index, int age, int flags)
+    {
+    }
+
+    /**
+     * Called when every animal has acted in a step. Fields that hold
+     * back changes until the end of a step apply them here; the others
+     * have nothing to do.
+     */
+    public void stepFinished()
+    {
+    }
+
     /**
      * Clear the given location.
      * @param location The location to clear.
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        clear(indexOf(location));
     }
-    
+
     /**
      * Place an animal at the given location.
      * If there is already an animal at the location it will
@@ -68,9 +329,9 @@ public class Field
      */
     public void place(Object animal, int row, int col)
     {
-        place(animal, new Location(row, col));
+        place(animal, indexOf(row, col));
     }
-    
+
     /**
      * Place an animal at the given location.
      * If there is already an animal at the location it will
@@ -80,9 +341,9 @@ public class Field
      */
     public void place(Object animal, Location location)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        place(animal, indexOf(location));
     }
-    
+
     /**
      * Return the animal at the given location, if any.
      * @param location Where in the field.
@@ -92,7 +353,7 @@ public class Field
     {
         return getObjectAt(location.getRow(), location.getCol());
     }
-    
+
     /**
      * Return the animal at the given location, if any.
      * @param row The desired row.
@@ -101,9 +362,19 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        return getObjectAt(indexOf(row, col));
+    }
+
+    /**
+     * Return whether the given cell is empty.
+     * @param index The index of the cell.
+     * @return true if there is no animal in the cell.
+     */
+    public boolean isEmpty(long index)
+    {
+        return getSpeciesAt(index) == SpeciesRegistry.EMPTY;
     }
-    
+
     /**
      * Generate a random location that is adjacent to the
      * given location, or is the same location.
@@ -114,10 +385,10 @@ public class Field
      */
     public Location randomAdjacentLocation(Location location)
     {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        long index = randomAdjacentIndex(indexOf(location));
+        return index < 0 ? location : locationOf(index);
     }
-    
+
     /**
      * Get a shuffled list of the free adjacent locations.
      * @param location Get locations adjacent to this.
@@ -125,16 +396,9 @@ public class Field
      */
     public List<Location> getFreeAdjacentLocations(Location location)
     {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) == null) {
-                free.add(next);
-            }
-        }
-        return free;
+        return toLocations(indexOf(location), freeAdjacentMask(indexOf(location)));
     }
-    
+
     /**
      * Try to find a free location that is adjacent to the
      * given location. If there is none, return null.
@@ -145,14 +409,8 @@ public class Field
      */
     public Location freeAdjacentLocation(Location location)
     {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
-        }
-        else {
-            return null;
-        }
+        long index = freeAdjacentIndex(indexOf(location));
+        return index < 0 ? null : locationOf(index);
     }
 
     /**
@@ -165,29 +423,159 @@ public class Field
     public List<Location> adjacentLocations(Location location)
     {
         assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
-        if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
-                }
-            }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
+        if(location == null) {
+            return new LinkedList<>();
         }
-        return locations;
+        long index = indexOf(location);
+        return toLocations(index, adjacentMask(index));
+    }
+
+    /**
+     * Return the index of the cell at the given position.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the cell.
+     */
+    public long indexOf(int row, int col)
+    {
+        return (long) row * width + col;
+    }
+
+    /**
+     * Return the index of the cell at the given location.
+     * @param location The location of the cell.
+     * @return The index of the cell.
+     */
+    public long indexOf(Location location)
+    {
+        return indexOf(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Return the row of the given cell.
+     * @param index The index of the cell.
+     * @return The row of the cell.
+     */
+    public int rowOf(long index)
+    {
+        return (int) (index / width);
+    }
+
+    /**
+     * Return the column of the given cell.
+     * @param index The index of the cell.
+     * @return The column of the cell.
+     */
+    public int colOf(long index)
+    {
+        return (int) (index % width);
+    }
+
+    /**
+     * Return the location of the given cell.
+     * @param index The index of the cell.
+     * @return A new location for the cell.
+     */
+    public Location locationOf(long index)
+    {
+        return new Location(rowOf(index), colOf(index));
+    }
+
+    /**
+     * Return a mask of the directions around a cell that stay
+     * within the field. Bit d of the mask is set if direction d
+     * leads to a valid cell.
+     * @param index The index of the cell.
+     * @return The mask of valid directions.
+     */
+    public int adjacentMask(long index)
+    {
+        int row = rowOf(index);
+        return adjacentMask(row, (int) (index - (long) row * width));
+    }
+
+    /**
+     * Return the index of the cell one step away in the given direction.
+     * The caller must check that the direction is valid for the cell.
+     * @param index The index of the cell.
+     * @param direction The direction, from 0 to DIRECTIONS - 1.
+     * @return The index of the adjacent cell.
+     */
+    public long adjacentIndex(long index, int direction)
+    {
+        return index + indexOffsets[direction];
+    }
+
+    /**
+     * Return a random order in which to visit the directions.
+     * The returned array is shared and must not be modified.
+     * @return The directions in a random order.
+     */
+    public int[] randomOrder()
+    {
+        return VISIT_ORDERS[Randomizer.getRandom().nextInt(VISIT_ORDERS.length)];
+    }
+
+    /**
+     * Pick one of the directions in the mask with equal chance.
+     * @param mask A mask of directions.
+     * @return A direction from the mask, or -1 if the mask is empty.
+     */
+    public int randomDirection(int mask)
+    {
+        int count = Integer.bitCount(mask);
+        if(count == 0) {
+            return -1;
+        }
+        for(int skip = Randomizer.getRandom().nextInt(count); skip > 0; skip--) {
+            mask &= mask - 1;
+        }
+        return Integer.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Return the index of a random cell adjacent to the given one.
+     * @param index The index of the cell.
+     * @return The index of an adjacent cell, or -1 if there is none.
+     */
+    public long randomAdjacentIndex(long index)
+    {
+        int direction = randomDirection(adjacentMask(index));
+        return direction < 0 ? -1 : adjacentIndex(index, direction);
+    }
+
+    /**
+     * Return the index of a random cell adjacent to the given one that
+     * holds an animal of one of the given species.
+     * @param index The index of the cell.
+     * @param speciesSet A set of species codes, bit c standing for code c.
+     * @return The index of such a cell, or -1 if there is none.
+     */
+    public long randomAdjacentIndex(long index, long speciesSet)
+    {
+        int direction = randomDirection(adjacentSpeciesMask(index, speciesSet));
+        return direction < 0 ? -1 : adjacentIndex(index, direction);
+    }
+
+    /**
+     * Return the index of a random free cell adjacent to the given one.
+     * @param index The index of the cell.
+     * @return The index of a free adjacent cell, or -1 if there is none.
+     */
+    public long freeAdjacentIndex(long index)
+    {
+        int direction = randomDirection(freeAdjacentMask(index));
+        return direction < 0 ? -1 : adjacentIndex(index, direction);
+    }
+
+    /**
+     * Return whether any cell adjacent to the given one is free.
+     * @param index The index of the cell.
+     * @return true if there is at least one free adjacent cell.
+     */
+    public boolean hasFreeAdjacent(long index)
+    {
+        return freeAdjacentMask(index) != 0;
     }
 
     /**
@@ -198,7 +586,7 @@ public class Field
     {
         return depth;
     }
-    
+
     /**
      * Return the width of the field.
      * @return The width of the field.
@@ -207,4 +595,117 @@ public class Field
     {
         return width;
     }
+
+    /**
+     * Return the number of cells in the field.
+     * @return The number of cells in the field.
+     */
+    public long getSize()
+    {
+        return (long) depth * width;
+    }
+
+    /**
+     * Record that an animal of the given species has been placed.
+     * @param code The species code of the animal.
+     */
+    protected void speciesAdded(int code)
+    {
+        populations[code].increment();
+    }
+
+    /**
+     * Record that an animal of the given species has been cleared.
+     * @param code The species code of the animal.
+     */
+    protected void speciesRemoved(int code)
+    {
+        populations[code].decrement();
+    }
+
+    /**
+     * Record that the field has been emptied.
+     */
+    protected void populationsCleared()
+    {
+        for(int code = 0; code < populations.length; code++) {
+            populations[code].reset();
+            infected[code].reset();
+        }
+    }
+
+    /**
+     * Return the mask of the directions that stay inside the field.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The mask of valid directions.
+     */
+    protected int adjacentMask(int row, int col)
+    {
+        int edges = 0;
+        if(row == 0) {
+            edges |= TOP;
+        }
+        if(row == depth - 1) {
+            edges |= BOTTOM;
+        }
+        if(col == 0) {
+            edges |= LEFT;
+        }
+        if(col == width - 1) {
+            edges |= RIGHT;
+        }
+        return EDGE_MASKS[edges];
+    }
+
+    /**
+     * Combine three row windows of a bitmap into a direction mask.
+     * Each window holds the bits from col - 1 to col + 1, lowest first.
+     * @param above The window of the row above the cell.
+     * @param middle The window of the cell's own row.
+     * @param below The window of the row below the cell.
+     * @return A mask with bit d set if the bitmap is set in direction d.
+     */
+    protected static int directionBits(int above, int middle, int below)
+    {
+        return above | (middle & 1) << 3 | (middle >>> 2) << 4 | below << 5;
+    }
+
+    /**
+     * Return the row offset of a direction.
+     * @param direction The direction.
+     * @return -1, 0 or 1.
+     */
+    protected static int rowOffset(int direction)
+    {
+        return ROW_OFFSETS[direction];
+    }
+
+    /**
+     * Return the column offset of a direction.
+     * @param direction The direction.
+     * @return -1, 0 or 1.
+     */
+    protected static int colOffset(int direction)
+    {
+        return COL_OFFSETS[direction];
+    }
+
+    /**
+     * Build a list of the locations in the given directions around
+     * a cell, in a random order.
+     * @param index The index of the cell.
+     * @param mask The directions to include.
+     * @return A list of locations.
+     */
+    private List<Location> toLocations(long index, int mask)
+    {
+        List<Location> locations = new LinkedList<>();
+        for(int direction : randomOrder()) {
+            if((mask & (1 << direction)) != 0) {
+                locations.add(locationOf(adjacentIndex(index, direction)));
+            }
+        }
+        return locations;
+    }
 }
@@ -0,0 +1,376 @@
+package field;
+
+import java.util.Arrays;
+
+/**
+ * A field that stores every cell of the grid in flat arrays.
+ *
+ * Each cell holds the identifier of its occupant, which is resolved
+ * through the occupant table of its row, and the species code of its
+ * occupant (see SpeciesRegistry), so that emptiness and species checks
+ * never need to touch the occupant itself.
+ *
+ * An occupancy bitmap, with each row starting on a fresh 64 bit word,
+ * mirrors which cells are taken. The free neighbours of a cell are found
+ * from three short bit windows of the bitmap instead of eight probes.
+ * Each species present in the field gets a bitmap of its own, so that a
+ * search for neighbours of given species is an OR of their windows.
+ *
+ * A cell may also hold a bare occupant, which has a species code but
+ * no object and so no identifier; the plants of a plant layer are kept
+ * this way.
+ *
+ * Since every row has its own occupant table and its own bitmap words,
+ * rows far enough apart can be updated from different threads at once.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.26
+ */
+public class GridField extends Field
+{
+    // The identifier of the animal in each cell, or 0 for an empty cell.
+    private int[] cells;
+    // The species code of the animal in each cell, or 0 for an empty cell.
+    private byte[] species;
+    // The animals of each row, indexed by identifier; created when first needed.
+    private OccupantTable[] occupants;
+    // The number of 64 bit words used by each row of a bitmap.
+    private int rowWords;
+    // One bit per cell, set when the cell is occupied.
+    private long[] occupied;
+    // One bitmap per species code, created when the species first appears.
+    private long[][] speciesPlanes;
+
+    /**
+     * Represent a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public GridField(int depth, int width)
+    {
+        super(depth, width);
+        if((long) depth * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Field too large for a grid: " + depth + "x" + width);
+        }
+        cells = new int[depth * width];
+        species = new byte[depth * width];
+        occupants = new OccupantTable[depth];
+        rowWords = (width + 63) / 64;
+        occupied = new long[depth * rowWords];
+        speciesPlanes = new long[SpeciesRegistry.MAX_SPECIES + 1][];
+    }
+
+    /**
+     * Empty the field.
+     */
+    @Override
+    public void clear()
+    {
+        Arrays.fill(cells, 0);
+        Arrays.fill(species, (byte) 0);
+        Arrays.fill(occupants, null);
+        populationsCleared();
+        Arrays.fill(occupied, 0);
+        for(long[] plane : speciesPlanes) {
+            if(plane != null) {
+                Arrays.fill(plane, 0);
+            }
+        }
+    }
+
+    /**
+     * Clear the given cell.
+     * @param index The index of the cell to clear.
+     */
+    @Override
+    public void clear(long index)
+    {
+        int cell = (int) index;
+        if(species[cell] != 0) {
+            int id = cells[cell];
+            if(id != 0) {
+                occupants[cell / getWidth()].remove(id);
+            }
+            int word = wordOf(cell);
+            long bit = 1L << (cell % getWidth());
+            occupied[word] &= ~bit;
+            speciesPlanes[species[cell]][word] &= ~bit;
+            speciesRemoved(species[cell]);
+            cells[cell] = 0;
+            species[cell] = 0;
+        }
+    }
+
+    /**
+     * Place an animal in the given cell.
+     * If there is already an animal in the cell it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param index The index of the cell.
+     */
+    @Override
+    public void place(Object animal, long index)
+    {
+        clear(index);
+        if(animal != null) {
+            int cell = (int) index;
+            int id = occupantsOf(cell / getWidth()).add(animal);
+            int code = SpeciesRegistry.codeOf(animal.getClass());
+            cells[cell] = id;
+            species[cell] = (byte) code;
+            int word = wordOf(cell);
+            long bit = 1L << (cell % getWidth());
+            occupied[word] |= bit;
+            speciesPlane(code)[word] |= bit;
+            speciesAdded(code);
+        }
+    }
+
+    /**
+     * Fill an empty cell with a bare occupant, which has a species code
+     * but no object; its identifier is left 0.
+     * @param code The species code of the occupant.
+     * @param index The index of the cell.
+     */
+    @Override
+    public void placeBare(int code, long index)
+    {
+        int cell = (int) index;
+        species[cell] = (byte) code;
+        int word = wordOf(cell);
+        long bit = 1L << (cell % getWidth());
+        occupied[word] |= bit;
+        speciesPlane(code)[word] |= bit;
+        speciesAdded(code);
+    }
+
+    /**
+     * Move the animal in one cell to another cell. If there is
+     * already an animal in the destination it will be lost.
+     * @param from The index of the cell to move from.
+     * @param to The index of the cell to move to.
+     */
+    @Override
+    public void move(long from, long to)
+    {
+        if(from != to) {
+            clear(to);
+            int source = (int) from;
+            int target = (int) to;
+            long[] plane = speciesPlanes[species[source]];
+            int fromWord = wordOf(source);
+            long fromBit = 1L << (source % getWidth());
+            int toWord = wordOf(target);
+            long toBit = 1L << (target % getWidth());
+            occupied[fromWord] &= ~fromBit;
+            plane[fromWord] &= ~fromBit;
+            occupied[toWord] |= toBit;
+            plane[toWord] |= toBit;
+            int fromRow = source / getWidth();
+            int toRow = target / getWidth();
+            if(fromRow == toRow) {
+                cells[target] = cells[source];
+            }
+            else {
+                OccupantTable table = occupants[fromRow];
+                cells[target] = occupantsOf(toRow).add(table.get(cells[source]));
+                table.remove(cells[source]);
+            }
+            species[target] = species[source];
+            cells[source] = 0;
+            species[source] = 0;
+        }
+    }
+
+    /**
+     * Return the animal in the given cell, if any.
+     * @param index The index of the cell.
+     * @return The animal in the cell, or null if there is none or it
+     *         is a bare occupant.
+     */
+    @Override
+    public Object getObjectAt(long index)
+    {
+        int cell = (int) index;
+        int id = cells[cell];
+        return id == 0 ? null : occupants[cell / getWidth()].get(id);
+    }
+
+    /**
+     * Return the species code of the animal in the given cell.
+     * @param index The index of the cell.
+     * @return The species code, or SpeciesRegistry.EMPTY if the cell is empty.
+     */
+    @Override
+    public int getSpeciesAt(long index)
+    {
+        return species[(int) index];
+    }
+
+    /**
+     * Rows of a grid field do not share any storage, so rows far
+     * enough apart can be updated from different threads at once.
+     * @return true.
+     */
+    @Override
+    public boolean supportsConcurrentRows()
+    {
+        return true;
+    }
+
+    /**
+     * A grid field keeps the species of each cell apart from its
+     * occupant, so it can hold occupants with no object.
+     * @return true.
+     */
+    @Override
+    public boolean supportsBareOccupants()
+    {
+        return true;
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an empty cell within the field.
+     * @param index The index of the cell.
+     * @return The mask of free directions.
+     */
+    @Override
+    public int freeAdjacentMask(long index)
+    {
+        int row = rowOf(index);
+        int col = (int) index - row * getWidth();
+        return adjacentMask(row, col) & ~neighbourBits(occupied, row, col);
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an animal of one of the given species.
+     * @param index The index of the cell.
+     * @param speciesSet A set of species codes, bit c standing for code c.
+     * @return The mask of directions holding one of the species.
+     */
+    @Override
+    public int adjacentSpeciesMask(long index, long speciesSet)
+    {
+        int row = rowOf(index);
+        int col = (int) index - row * getWidth();
+        int bits = 0;
+        for(long set = speciesSet; set != 0; set &= set - 1) {
+            long[] plane = speciesPlanes[Long.numberOfTrailingZeros(set)];
+            if(plane != null) {
+                bits |= neighbourBits(plane, row, col);
+            }
+        }
+        return bits & adjacentMask(row, col);
+    }
+
+    /**
+     * Add the number of animals of each species in the field to
+     * the given totals, indexed by species code.
+     * @param totals The totals to add to.
+     */
+    @Override
+    public void countSpecies(int[] totals)
+    {
+        for(byte code : species) {
+            totals[code]++;
+        }
+        totals[SpeciesRegistry.EMPTY] = 0;
+    }
+
+    /**
+     * Gather the bits of a bitmap around a cell into a direction mask.
+     * Bits for directions outside the field are unspecified; callers
+     * combine the result with adjacentMask.
+     * @param plane A bitmap with rows starting on word boundaries.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return A mask with bit d set if the bitmap is set in direction d.
+     */
+    private int neighbourBits(long[] plane, int row, int col)
+    {
+        int above = row > 0 ? rowWindow(plane, row - 1, col) : 0;
+        int below = row < getDepth() - 1 ? rowWindow(plane, row + 1, col) : 0;
+        return directionBits(above, rowWindow(plane, row, col), below);
+    }
+
+    /**
+     * Read the three bits of a bitmap row from col - 1 to col + 1.
+     * @param plane A bitmap with rows starting on word boundaries.
+     * @param row The row to read.
+     * @param col The middle column of the window.
+     * @return The three bits, with col - 1 as the lowest.
+     */
+    private int rowWindow(long[] plane, int row, int col)
+    {
+        int base = row * rowWords;
+        int start = col - 1;
+        if(start >= 0 && (start & 63) <= 61) {
+            // The whole window lies within one word.
+            return (int) (plane[base + (start >>> 6)] >>> start) & 7;
+        }
+        // The window straddles a word boundary or the left edge.
+        int bits = 0;
+        for(int k = 0; k < 3; k++) {
+            int c = start + k;
+            if(c >= 0 && c < getWidth() && (plane[base + (c >>> 6)] & (1L << c)) != 0) {
+                bits |= 1 << k;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Return the bitmap of a species, creating it if needed.
+     * @param code The species code.
+     * @return The bitmap of the species.
+     */
+    private long[] speciesPlane(int code)
+    {
+        long[] plane = speciesPlanes[code];
+        return plane != null ? plane : createSpeciesPlane(code);
+    }
+
+    /**
+     * Create the bitmap of a species, unless another thread has
+     * just done so.
+     * @param code The species code.
+     * @return The bitmap of the species.
+     */
+    private synchronized long[] createSpeciesPlane(int code)
+    {
+        long[] plane = speciesPlanes[code];
+        if(plane == null) {
+            plane = new long[occupied.length];
+            speciesPlanes[code] = plane;
+        }
+        return plane;
+    }
+
+    /**
+     * Return the occupant table of a row, creating it if needed.
+     * @param row The row.
+     * @return The occupant table of the row.
+     */
+    private OccupantTable occupantsOf(int row)
+    {
+        OccupantTable table = occupants[row];
+        if(table == null) {
+            table = new OccupantTable();
+            occupants[row] = table;
+        }
+        return table;
+    }
+
+    /**
+     * Return the bitmap word holding the bit of the given cell.
+     * @param cell The index of the cell.
+     * @return The index of the word.
+     */
+    private int wordOf(int cell)
+    {
+        int row = cell / getWidth();
+        return row * rowWords + (cell - row * getWidth()) / 64;
+    }
+}
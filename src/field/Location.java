@@ -48,14 +48,15 @@ public class Location
     }
     
     /**
-     * Use the top 16 bits for the row value and the bottom for
-     * the column. Except for very big grids, this should give a
-     * unique hash code for each (row, col) pair.
+     * Mix the row and the column with a large odd multiplier, so that
+     * locations in very wide grids still spread over the whole range
+     * of hash codes.
      * @return A hashcode for the location.
      */
     public int hashCode()
     {
-        return (row << 16) + col;
+        int hash = row * 0x9E3779B1 + col;
+        return hash ^ (hash >>> 16);
     }
     
     /**
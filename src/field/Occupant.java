@@ -0,0 +1,32 @@
+package field;
+
+/**
+ * An occupant of a field that can take part in settling competing claims
+ * to a cell. A DoubleBufferedField lets several occupants claim the same
+ * cell during a step and settles the matter when the step finishes: the
+ * claim with the lowest key wins, whatever order the claims were made in.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public interface Occupant
+{
+    /**
+     * @return The cell the occupant believes it is in, or -1 if none.
+     */
+    long getCell();
+
+    /**
+     * Return the key of the occupant's latest claim. Lower keys win;
+     * when keys are equal the earlier claim stands.
+     * @return The key of the claim.
+     */
+    long getClaimKey();
+
+    /**
+     * Tell the occupant it has lost its claim to a cell. The occupant
+     * should go back to where it came from, or leave the field.
+     * @param cell The cell that was lost.
+     */
+    void claimLost(long cell);
+}
@@ -0,0 +1,86 @@
+package field;
+
+import java.util.Arrays;
+
+/**
+ * A table of the animals in a field, giving each one a small integer
+ * identifier so that fields can store identifiers instead of references.
+ * Identifiers of removed animals are reused. Identifier 0 is never handed
+ * out and always resolves to null.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.27
+ */
+class OccupantTable
+{
+    // The animals, indexed by identifier. Slot 0 is always null.
+    private Object[] occupants;
+    // Identifiers released by removed animals, ready to be reused.
+    private int[] freeIds;
+    private int freeCount;
+    // The lowest identifier that has never been used.
+    private int nextId;
+
+    /**
+     * Create an empty table.
+     */
+    OccupantTable()
+    {
+        occupants = new Object[16];
+        freeIds = new int[16];
+        nextId = 1;
+    }
+
+    /**
+     * Add an animal to the table.
+     * @param animal The animal.
+     * @return The identifier of the animal.
+     */
+    int add(Object animal)
+    {
+        int id;
+        if(freeCount > 0) {
+            id = freeIds[--freeCount];
+        }
+        else {
+            if(nextId == occupants.length) {
+                occupants = Arrays.copyOf(occupants, occupants.length * 2);
+            }
+            id = nextId++;
+        }
+        occupants[id] = animal;
+        return id;
+    }
+
+    /**
+     * Remove an animal from the table.
+     * @param id The identifier of the animal.
+     */
+    void remove(int id)
+    {
+        occupants[id] = null;
+        if(freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * @param id An identifier.
+     * @return The animal with the identifier, or null for identifier 0.
+     */
+    Object get(int id)
+    {
+        return occupants[id];
+    }
+
+    /**
+     * Remove all the animals from the table.
+     */
+    void clear()
+    {
+        Arrays.fill(occupants, null);
+        freeCount = 0;
+        nextId = 1;
+    }
+}
@@ -0,0 +1,346 @@
+package field;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A field whose cells live outside the Java heap, so that the garbage
+ * collector never has to scan or copy them however large the grid is.
+ *
+ * Each cell is a fixed record of RECORD_BYTES bytes holding the species
+ * code, the state flags, the age and the slot of its occupant in the
+ * occupant table; only the occupants themselves stay on the heap. The
+ * records are kept in direct byte buffers of at most one gigabyte each,
+ * either anonymous or mapped from a file. A mapped file starts with a
+ * header of HEADER_BYTES bytes (magic, version, depth, width, record
+ * size) and can be read by another process while the simulation runs.
+ * All values are little endian.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.27
+ */
+public class OffHeapField extends Field
+{
+    // The size of a cell record and the offsets of its fields.
+    public static final int RECORD_BYTES = 8;
+    public static final int SPECIES_OFFSET = 0;
+    public static final int FLAGS_OFFSET = 1;
+    public static final int AGE_OFFSET = 2;
+    public static final int SLOT_OFFSET = 4;
+    // The size of the header of a mapped file, and the value it starts with.
+    public static final int HEADER_BYTES = 64;
+    public static final int MAGIC = 0x464C4431;
+    // The version of the record layout.
+    private static final int VERSION = 1;
+    // The number of bits of a cell index that select a record within a segment.
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    // The records, split into segments of 2^SEGMENT_SHIFT cells.
+    private ByteBuffer[] segments;
+    // The animals, indexed by the slot stored in their record.
+    private OccupantTable occupants;
+
+    /**
+     * Create a field whose records are held in anonymous direct memory.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public OffHeapField(int depth, int width)
+    {
+        super(depth, width);
+        segments = new ByteBuffer[segmentCount()];
+        for(int n = 0; n < segments.length; n++) {
+            segments[n] = ByteBuffer.allocateDirect(segmentBytes(n)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        occupants = new OccupantTable();
+    }
+
+    /**
+     * Create a field whose records are mapped from a file. The file is
+     * created or resized as needed, and its previous contents are lost.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param file The file to map.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public OffHeapField(int depth, int width, Path file) throws IOException
+    {
+        super(depth, width);
+        segments = new ByteBuffer[segmentCount()];
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(depth).putInt(width).putInt(RECORD_BYTES);
+            long position = HEADER_BYTES;
+            for(int n = 0; n < segments.length; n++) {
+                segments[n] = channel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes(n))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                position += segmentBytes(n);
+            }
+        }
+        occupants = new OccupantTable();
+        clear();
+    }
+
+    /**
+     * Empty the field.
+     */
+    @Override
+    public void clear()
+    {
+        for(ByteBuffer segment : segments) {
+            for(int position = 0; position < segment.capacity(); position += RECORD_BYTES) {
+                segment.putLong(position, 0);
+            }
+        }
+        occupants.clear();
+        populationsCleared();
+    }
+
+    /**
+     * Clear the given cell.
+     * @param index The index of the cell to clear.
+     */
+    @Override
+    public void clear(long index)
+    {
+        ByteBuffer segment = segmentOf(index);
+        int position = positionOf(index);
+        int slot = segment.getInt(position + SLOT_OFFSET);
+        if(slot != 0) {
+            occupants.remove(slot);
+            speciesRemoved(segment.get(position + SPECIES_OFFSET));
+            segment.putLong(position, 0);
+        }
+    }
+
+    /**
+     * Place an animal in the given cell.
+     * If there is already an animal in the cell it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param index The index of the cell.
+     */
+    @Override
+    public void place(Object animal, long index)
+    {
+        clear(index);
+        if(animal != null) {
+            ByteBuffer segment = segmentOf(index);
+            int position = positionOf(index);
+            int code = SpeciesRegistry.codeOf(animal.getClass());
+            segment.put(position + SPECIES_OFFSET, (byte) code);
+            segment.putInt(position + SLOT_OFFSET, occupants.add(animal));
+            speciesAdded(code);
+        }
+    }
+
+    /**
+     * Move the animal in one cell to another cell, together with its
+     * age and flags. If there is already an animal in the destination
+     * it will be lost.
+     * @param from The index of the cell to move from.
+     * @param to The index of the cell to move to.
+     */
+    @Override
+    public void move(long from, long to)
+    {
+        if(from != to) {
+            clear(to);
+            ByteBuffer source = segmentOf(from);
+            int position = positionOf(from);
+            segmentOf(to).putLong(positionOf(to), source.getLong(position));
+            source.putLong(position, 0);
+        }
+    }
+
+    /**
+     * Return the animal in the given cell, if any.
+     * @param index The index of the cell.
+     * @return The animal in the cell, or null if there is none.
+     */
+    @Override
+    public Object getObjectAt(long index)
+    {
+        return occupants.get(segmentOf(index).getInt(positionOf(index) + SLOT_OFFSET));
+    }
+
+    /**
+     * Return the species code of the animal in the given cell.
+     * @param index The index of the cell.
+     * @return The species code, or SpeciesRegistry.EMPTY if the cell is empty.
+     */
+    @Override
+    public int getSpeciesAt(long index)
+    {
+        return segmentOf(index).get(positionOf(index) + SPECIES_OFFSET);
+    }
+
+    /**
+     * Return the age recorded for the animal in the given cell.
+     * @param index The index of the cell.
+     * @return The age, or 0 if the cell is empty.
+     */
+    public int getAgeAt(long index)
+    {
+        return segmentOf(index).getShort(positionOf(index) + AGE_OFFSET) & 0xFFFF;
+    }
+
+    /**
+     * Return the flags recorded for the animal in the given cell.
+     * @param index The index of the cell.
+     * @return A combination of the FLAG_ constants, or 0 if the cell is empty.
+     */
+    public int getFlagsAt(long index)
+    {
+        return segmentOf(index).get(positionOf(index) + FLAGS_OFFSET);
+    }
+
+    /**
+     * Record the age and state flags of the animal in the given cell.
+     * Ages beyond the range of the record are stored as its maximum.
+     * @param index The index of the cell.
+     * @param age The age of the animal.
+     * @param flags A combination of the FLAG_ constants.
+     */
+    @Override
+    public void updateState(long index, int age, int flags)
+    {
+        ByteBuffer segment = segmentOf(index);
+        int position = positionOf(index);
+        segment.put(position + FLAGS_OFFSET, (byte) flags);
+        segment.putShort(position + AGE_OFFSET, (short) Math.min(age, 0xFFFF));
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an empty cell within the field.
+     * @param index The index of the cell.
+     * @return The mask of free directions.
+     */
+    @Override
+    public int freeAdjacentMask(long index)
+    {
+        int mask = adjacentMask(index);
+        for(int bits = mask; bits != 0; bits &= bits - 1) {
+            int direction = Integer.numberOfTrailingZeros(bits);
+            if(getSpeciesAt(adjacentIndex(index, direction)) != SpeciesRegistry.EMPTY) {
+                mask &= ~(1 << direction);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Return a mask of the directions around a cell that lead to
+     * an animal of one of the given species.
+     * @param index The index of the cell.
+     * @param speciesSet A set of species codes, bit c standing for code c.
+     * @return The mask of directions holding one of the species.
+     */
+    @Override
+    public int adjacentSpeciesMask(long index, long speciesSet)
+    {
+        int found = 0;
+        for(int bits = adjacentMask(index); bits != 0; bits &= bits - 1) {
+            int direction = Integer.numberOfTrailingZeros(bits);
+            int code = getSpeciesAt(adjacentIndex(index, direction));
+            if(code != SpeciesRegistry.EMPTY && (speciesSet & (1L << code)) != 0) {
+                found |= 1 << direction;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Add the number of animals of each species in the field to
+     * the given totals, indexed by species code. The records are
+     * read in storage order.
+     * @param totals The totals to add to.
+     */
+    @Override
+    public void countSpecies(int[] totals)
+    {
+        for(ByteBuffer segment : segments) {
+            for(int position = 0; position < segment.capacity(); position += RECORD_BYTES) {
+                totals[segment.get(position + SPECIES_OFFSET)]++;
+            }
+        }
+        totals[SpeciesRegistry.EMPTY] = 0;
+    }
+
+    /**
+     * @return The number of segments holding the records.
+     */
+    public int getSegmentCount()
+    {
+        return segments.length;
+    }
+
+    /**
+     * Return a read-only view of a segment, for scanning the records
+     * directly. Segment n holds the cells from n * 2^27 onwards.
+     * @param n The number of the segment.
+     * @return A view of the segment.
+     */
+    public ByteBuffer getSegment(int n)
+    {
+        return segments[n].asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write any changes to a mapped file through to the storage device.
+     * This has no effect on a field held in anonymous memory.
+     */
+    public void flush()
+    {
+        for(ByteBuffer segment : segments) {
+            if(segment instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) segment).force();
+            }
+        }
+    }
+
+    /**
+     * @return The number of segments needed for the whole grid.
+     */
+    private int segmentCount()
+    {
+        return (int) ((getSize() + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    }
+
+    /**
+     * @param n The number of a segment.
+     * @return The size of the segment in bytes.
+     */
+    private int segmentBytes(int n)
+    {
+        long cells = Math.min(getSize() - ((long) n << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT);
+        return (int) (cells * RECORD_BYTES);
+    }
+
+    /**
+     * @param index The index of a cell.
+     * @return The segment holding the cell's record.
+     */
+    private ByteBuffer segmentOf(long index)
+    {
+        return segments[(int) (index >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * @param index The index of a cell.
+     * @return The position of the cell's record within its segment.
+     */
+    private static int positionOf(long index)
+    {
+        return (int) (index & SEGMENT_MASK) * RECORD_BYTES;
+    }
+}
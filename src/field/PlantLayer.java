@@ -0,0 +1,422 @@
+package field;
+
+import utils.CounterRandom;
+import utils.Randomizer;
+
+import java.util.Arrays;
+
+/**
+ * The plants of a field kept as plain arrays over its grid instead of as
+ * organisms: the age of the plant in each cell as a byte, and bitmaps of
+ * the cells holding a plant, a plant old enough to breed and an infected
+ * plant, each row starting on a fresh 64 bit word as in GridField. The
+ * plants are bare occupants of the field (see Field.placeBare), so they
+ * take up their cells and count towards the population of their species
+ * like organisms do, and eaters find them the same way.
+ *
+ * Plants do nothing while the animals act. Once they have, step grows
+ * the whole layer at once, like a cellular automaton: every plant it
+ * rains on (see Environment) ages, and those past their maximum age
+ * die; then every free cell next to n plants old enough to breed is
+ * sown with a seedling with probability 1 - (1 - p)^n, p being the
+ * breeding probability. The cells
+ * to be sown are picked out of the bitmaps 64 at a time, so the cost of
+ * a step lies in the edges of the meadows rather than in the plants.
+ *
+ * Animals may eat and infect plants while acting in parallel stripes,
+ * as each only touches the words of its own row.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class PlantLayer
+{
+    // The species code of the plants.
+    private final int code;
+    // The age at which a plant can breed, and the age to which it can live.
+    private final int breedingAge;
+    private final int maxAge;
+    // The probability that a plant is infected by an infected neighbour.
+    private final double infectedProbability;
+    // The food value of a plant.
+    private final int foodValue;
+    // The probability that a free cell is sown, by the number of
+    // plants around it old enough to breed.
+    private final double[] sowingProbabilities;
+    // The field the plants grow in.
+    private final Field field;
+    // The width of the field, and the number of words in each row of a bitmap.
+    private final int width;
+    private final int rowWords;
+    // The age of the plant in each cell; meaningless where there is none.
+    private final byte[] ages;
+    // One bit per cell holding a plant, a plant old enough to breed,
+    // and an infected plant.
+    private final long[] present;
+    private final long[] mature;
+    private final long[] infected;
+
+    /**
+     * Create an empty plant layer over a field, which from then on keeps
+     * the plants of the field.
+     * @param field The field.
+     * @param code The species code of the plants.
+     * @param breedingAge The age at which a plant can breed.
+     * @param maxAge The age to which a plant can live, at most 127.
+     * @param breedingProbability The probability of a plant breeding,
+     *        that is of sowing a free neighbouring cell, in a step.
+     * @param infectedProbability The probability of a plant being
+     *        infected by an infected neighbour.
+     * @param foodValue The food value of a plant.
+     * @throws IllegalArgumentException If the field cannot hold bare
+     *         occupants or the plants could grow too old.
+     */
+    public PlantLayer(Field field, int code, int breedingAge, int maxAge, double breedingProbability,
+                      double infectedProbability, int foodValue)
+    {
+        if(!field.supportsBareOccupants()) {
+            throw new IllegalArgumentException(field.getClass().getSimpleName() + " cannot hold a plant layer");
+        }
+        // An age is kept in a byte, and must be able to pass the maximum.
+        if(maxAge >= Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("plants may live to at most " + (Byte.MAX_VALUE - 1) + ": " + maxAge);
+        }
+        this.field = field;
+        this.code = code;
+        this.breedingAge = breedingAge;
+        this.maxAge = maxAge;
+        this.infectedProbability = infectedProbability;
+        this.foodValue = foodValue;
+        sowingProbabilities = new double[Field.DIRECTIONS + 1];
+        for(int n = 0; n <= Field.DIRECTIONS; n++) {
+            sowingProbabilities[n] = 1 - Math.pow(1 - breedingProbability, n);
+        }
+        width = field.getWidth();
+        rowWords = (width + 63) / 64;
+        ages = new byte[(int) field.getSize()];
+        present = new long[field.getDepth() * rowWords];
+        mature = new long[present.length];
+        infected = new long[present.length];
+        field.setPlantLayer(this);
+    }
+
+    /**
+     * @return The species code of the plants.
+     */
+    public int getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return The probability of a plant being infected by an infected
+     *         neighbour.
+     */
+    public double getInfectedProbability()
+    {
+        return infectedProbability;
+    }
+
+    /**
+     * Return whether there is a plant in the given cell.
+     * @param index The index of the cell.
+     * @return true if the cell holds a plant.
+     */
+    public boolean hasPlant(long index)
+    {
+        int cell = (int) index;
+        return (present[wordOf(cell)] & bitOf(cell)) != 0;
+    }
+
+    /**
+     * Return the age of the plant in the given cell.
+     * @param index The index of a cell holding a plant.
+     * @return The age of the plant.
+     */
+    public int getAge(long index)
+    {
+        return ages[(int) index];
+    }
+
+    /**
+     * Return whether the plant in the given cell is infected.
+     * @param index The index of a cell holding a plant.
+     * @return true if the plant is infected.
+     */
+    public boolean isInfected(long index)
+    {
+        int cell = (int) index;
+        return (infected[wordOf(cell)] & bitOf(cell)) != 0;
+    }
+
+    /**
+     * Return the first cell from the given one on that holds a plant,
+     * to go through the plants in cell order.
+     * @param from The index of the cell to start from.
+     * @return The index of the cell, or -1 if there is no plant from there on.
+     */
+    public long nextPlant(long from)
+    {
+        if(from >= ages.length) {
+            return -1;
+        }
+        int row = (int) (from / width);
+        int col = (int) (from - (long) row * width);
+        int word = row * rowWords + col / 64;
+        long bits = present[word] & (-1L << col);
+        while(bits == 0) {
+            if(++word == present.length) {
+                return -1;
+            }
+            bits = present[word];
+        }
+        row = word / rowWords;
+        return (long) row * width + (word - row * rowWords) * 64 + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Grow a new plant in an empty cell.
+     * @param index The index of the cell.
+     * @param isRandomAge Whether the plant is given a random age, drawn
+     *        from the generator of the current thread (see Randomizer),
+     *        rather than being a seedling.
+     */
+    public void plant(long index, boolean isRandomAge)
+    {
+        restore(index, isRandomAge ? Randomizer.getRandom().nextInt(maxAge) : 0, false);
+    }
+
+    /**
+     * Put back a plant in an empty cell, as it was when it was saved.
+     * @param index The index of the cell.
+     * @param age The age of the plant.
+     * @param isInfected Whether the plant is infected.
+     */
+    public void restore(long index, int age, boolean isInfected)
+    {
+        int cell = (int) index;
+        int word = wordOf(cell);
+        long bit = bitOf(cell);
+        field.placeBare(code, index);
+        ages[cell] = (byte) age;
+        present[word] |= bit;
+        if(age >= breedingAge) {
+            mature[word] |= bit;
+        }
+        if(isInfected) {
+            setInfected(index);
+        }
+    }
+
+    /**
+     * Infect the plant in the given cell.
+     * @param index The index of a cell holding a plant.
+     */
+    public void setInfected(long index)
+    {
+        int cell = (int) index;
+        int word = wordOf(cell);
+        long bit = bitOf(cell);
+        if((infected[word] & bit) == 0) {
+            infected[word] |= bit;
+            field.infectedAdded(code);
+        }
+    }
+
+    /**
+     * Eat the plant in the given cell, which empties the cell.
+     * @param index The index of a cell holding a plant.
+     * @return The food value of the plant.
+     */
+    public int eat(long index)
+    {
+        remove((int) index);
+        return foodValue;
+    }
+
+    /**
+     * Remove every plant. The field is emptied by its owner.
+     */
+    public void clear()
+    {
+        Arrays.fill(present, 0);
+        Arrays.fill(mature, 0);
+        Arrays.fill(infected, 0);
+    }
+
+    /**
+     * Grow the plants for a step, after the animals have acted: age
+     * those it rains on, and sow the free cells around those old enough
+     * to breed. The numbers are drawn for each cell sown in turn, so the
+     * result does not depend on how the animals acted.
+     * @param step The step being taken.
+     * @param random The generator to draw from.
+     */
+    public void step(long step, CounterRandom random)
+    {
+        if(field.getEnvironment().isRaining()) {
+            grow();
+        }
+        sow(step, random);
+    }
+
+    /**
+     * Age every plant it is raining on by one, letting those past their
+     * maximum age die.
+     */
+    private void grow()
+    {
+        Environment environment = field.getEnvironment();
+        for(int word = 0; word < present.length; word++) {
+            int row = word / rowWords;
+            int first = row * width + (word - row * rowWords) * 64;
+            for(long bits = present[word]; bits != 0; bits &= bits - 1) {
+                int cell = first + Long.numberOfTrailingZeros(bits);
+                if(!environment.isRaining(cell)) {
+                    continue;
+                }
+                int age = ++ages[cell];
+                if(age > maxAge) {
+                    remove(cell);
+                }
+                else if(age >= breedingAge) {
+                    mature[word] |= bits & -bits;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sow a seedling in each free cell next to plants old enough to
+     * breed, with a probability rising with their number. Seedlings
+     * cannot breed, so sowing one cell never changes the chances of
+     * another, and the cells can be taken in any order.
+     * @param step The step being taken.
+     * @param random The generator to draw from.
+     */
+    private void sow(long step, CounterRandom random)
+    {
+        int depth = field.getDepth();
+        // The bits of the last word of a row that lie inside the field.
+        long lastWordMask = width % 64 == 0 ? -1L : (1L << width % 64) - 1;
+        for(int row = 0; row < depth; row++) {
+            int base = row * rowWords;
+            for(int w = 0; w < rowWords; w++) {
+                // The cells next to a mature plant: the mature bits of this
+                // row and the rows around it, spread one column each way.
+                long near = spread(base + w, w);
+                if(row > 0) {
+                    near |= spread(base - rowWords + w, w);
+                }
+                if(row < depth - 1) {
+                    near |= spread(base + rowWords + w, w);
+                }
+                near &= ~present[base + w];
+                if(w == rowWords - 1) {
+                    near &= lastWordMask;
+                }
+                for(; near != 0; near &= near - 1) {
+                    int col = w * 64 + Long.numberOfTrailingZeros(near);
+                    long index = (long) row * width + col;
+                    if(!field.isEmpty(index)) {
+                        continue;
+                    }
+                    int neighbours = Integer.bitCount(matureAround(row, col));
+                    if(random.at(step, index, CounterRandom.PLANTS).nextDouble() < sowingProbabilities[neighbours]) {
+                        restore(index, 0, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Spread the mature bits of a word one column to each side, bringing
+     * in the bits of the neighbouring words of the same row.
+     * @param word The index of the word.
+     * @param w The position of the word within its row.
+     * @return The bits of the word next to or on a mature plant.
+     */
+    private long spread(int word, int w)
+    {
+        long bits = mature[word];
+        long spread = bits | bits << 1 | bits >>> 1;
+        if(w > 0) {
+            spread |= mature[word - 1] >>> 63;
+        }
+        if(w < rowWords - 1) {
+            spread |= mature[word + 1] << 63;
+        }
+        return spread;
+    }
+
+    /**
+     * Gather the mature bits around a cell into a direction mask.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return A mask with bit d set if there is a mature plant in direction d.
+     */
+    private int matureAround(int row, int col)
+    {
+        int above = row > 0 ? rowWindow(row - 1, col) : 0;
+        int below = row < field.getDepth() - 1 ? rowWindow(row + 1, col) : 0;
+        return Field.directionBits(above, rowWindow(row, col), below);
+    }
+
+    /**
+     * Read the three mature bits of a row from col - 1 to col + 1.
+     * @param row The row to read.
+     * @param col The middle column of the window.
+     * @return The three bits, with col - 1 as the lowest.
+     */
+    private int rowWindow(int row, int col)
+    {
+        int base = row * rowWords;
+        int bits = 0;
+        for(int k = 0; k < 3; k++) {
+            int c = col - 1 + k;
+            if(c >= 0 && c < width && (mature[base + (c >>> 6)] & (1L << c)) != 0) {
+                bits |= 1 << k;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Remove the plant in a cell, emptying the cell.
+     * @param cell The index of a cell holding a plant.
+     */
+    private void remove(int cell)
+    {
+        int word = wordOf(cell);
+        long bit = bitOf(cell);
+        if((infected[word] & bit) != 0) {
+            infected[word] &= ~bit;
+            field.infectedRemoved(code);
+        }
+        present[word] &= ~bit;
+        mature[word] &= ~bit;
+        field.clear(cell);
+    }
+
+    /**
+     * Return the bitmap word holding the bit of the given cell.
+     * @param cell The index of the cell.
+     * @return The index of the word.
+     */
+    private int wordOf(int cell)
+    {
+        int row = cell / width;
+        return row * rowWords + (cell - row * width) / 64;
+    }
+
+    /**
+     * Return the bit of the given cell within its bitmap word.
+     * @param cell The index of the cell.
+     * @return The bit.
+     */
+    private long bitOf(int cell)
+    {
+        return 1L << (cell % width);
+    }
+}
@@ -0,0 +1,134 @@
+package field;
+
+import java.util.Arrays;
+
+/**
+ * Assign small integer codes to the species (classes) that can occupy
+ * a field. Code 0 is reserved for an empty cell, so the first species
+ * registered gets code 1. Codes are shared by every field in the program,
+ * which lets them be stored in byte planes and compared directly.
+ *
+ * Species are registered the first time their code is asked for, such
+ * as when they are first placed in a field; asking for the codes of all
+ * of them up front gives them a fixed order.
+ *
+ * The registry also keeps who eats whom, as a matrix of bits: a row for
+ * each species, itself a set of the codes of the species it eats. Each
+ * species that eats sets its own row when its class is initialized, so
+ * the row is in place before any of it can act.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.24
+ */
+public class SpeciesRegistry
+{
+    // The code of an empty cell.
+    public static final int EMPTY = 0;
+    // The highest code that can be assigned, so codes fit in a long bit set.
+    public static final int MAX_SPECIES = 63;
+
+    // The species of each code, replaced as a whole when a species is added.
+    private static volatile Class<?>[] classes = new Class<?>[MAX_SPECIES + 1];
+    // The number of species registered so far.
+    private static volatile int count;
+    // The set of species each species eats, by code, replaced as a whole
+    // when a diet is set.
+    private static volatile long[] diets = new long[MAX_SPECIES + 1];
+    // Fast lookup of the code of a class.
+    private static final ClassValue<Integer> codes = new ClassValue<>()
+    {
+        @Override
+        protected Integer computeValue(Class<?> species)
+        {
+            return assign(species);
+        }
+    };
+
+    /**
+     * Return the code of a species, registering it if needed.
+     * @param species The class of the species.
+     * @return The code of the species.
+     */
+    public static int codeOf(Class<?> species)
+    {
+        return codes.get(species);
+    }
+
+    /**
+     * Return the set of codes of the given species, registering any
+     * that are new. Bit c of the set stands for code c.
+     * @param species The classes of the species.
+     * @return The set of their codes.
+     */
+    public static long setOf(Class<?>... species)
+    {
+        long set = 0;
+        for(Class<?> type : species) {
+            set |= 1L << codeOf(type);
+        }
+        return set;
+    }
+
+    /**
+     * Set what a species eats, registering any species that are new.
+     * @param predator The class of the species that eats.
+     * @param prey The classes of the species it eats.
+     */
+    public static synchronized void setDiet(Class<?> predator, Class<?>... prey)
+    {
+        long[] updated = Arrays.copyOf(diets, diets.length);
+        updated[codeOf(predator)] = setOf(prey);
+        diets = updated;
+    }
+
+    /**
+     * Return the set of species a species eats. Bit c of the set stands
+     * for code c.
+     * @param code The code of the species.
+     * @return The set of the codes of the species it eats; empty if it
+     *         eats none or its diet has not been set.
+     */
+    public static long dietOf(int code)
+    {
+        return diets[code];
+    }
+
+    /**
+     * Return the species with the given code.
+     * @param code The code of the species.
+     * @return The class of the species, or null if the code is unused.
+     */
+    public static Class<?> classOf(int code)
+    {
+        return classes[code];
+    }
+
+    /**
+     * @return The highest code assigned so far.
+     */
+    public static int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Give a new species the next free code.
+     * @param species The class of the species.
+     * @return The new code.
+     */
+    private static synchronized int assign(Class<?> species)
+    {
+        for(int code = 1; code <= count; code++) {
+            if(classes[code] == species) {
+                return code;
+            }
+        }
+        if(count == MAX_SPECIES) {
+            throw new IllegalStateException("Too many species: " + species.getName());
+        }
+        Class<?>[] updated = Arrays.copyOf(classes, classes.length);
+        updated[count + 1] = species;
+        classes = updated;
+        return ++count;
+    }
+}
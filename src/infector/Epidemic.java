@@ -0,0 +1,187 @@
+package infector;
+
+import animals.Organism;
+import field.Field;
+import field.PlantLayer;
+import utils.CounterRandom;
+
+import java.util.Arrays;
+
+/**
+ * The Epidemic class spreads diseases between the same and differing
+ * species of organisms, once a step, after they have all acted.
+ *
+ * It keeps the organisms that are infected in a list, so a step's new
+ * infections are worked out in one pass over them and their occupied
+ * neighbours, however many organisms there are. Each infectious
+ * organism may infect each susceptible neighbour with the neighbour's
+ * probability of infection, three times as likely if they are of the
+ * same species. Those infected in a step do not pass it on until the
+ * next. Each carrier draws one number for every occupied cell next to
+ * its own, whether or not the neighbour can still be infected, so what
+ * it draws does not depend on which carriers came before it: a step has
+ * the same outcome whatever order the infected are kept in, as after a
+ * restore.
+ *
+ * The course of the disease follows one of three models. Under SI, the
+ * infected are infectious straight away and stay so for life. Under SIR
+ * they recover with RECOVERY_PROBABILITY each step, and cannot be
+ * infected again; under SEIR they are first exposed, infected but not
+ * yet infectious, and become infectious with ONSET_PROBABILITY each step.
+ * The plants of a plant layer catch the disease but never recover.
+ *
+ * @author Jonathan Rivera, Andrian Stoykov, Pushkar Garg
+ * @version 2020.02.28
+ */
+public class Epidemic {
+    /**
+     * The models of the course of the disease.
+     */
+    public enum Model {
+        SI, SIR, SEIR
+    }
+
+    // How many times as likely an infection is within a species.
+    private static final double SAME_SPECIES_FACTOR = 3;
+    // The probability that an exposed organism becomes infectious in a step.
+    private static final double ONSET_PROBABILITY = 0.25;
+    // The probability that an infectious organism recovers in a step.
+    private static final double RECOVERY_PROBABILITY = 0.1;
+
+    // The model of the course of the disease.
+    private Model model;
+    // The organisms that are infected, with room to spare after the last;
+    // some may have died or recovered since the last step.
+    private Organism[] infected = new Organism[64];
+    // The number of organisms in the list.
+    private int size;
+
+    /**
+     * Create an epidemic with no one infected.
+     *
+     * @param model The model of the course of the disease.
+     */
+    public Epidemic(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * @return The model of the course of the disease.
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Change the model of the course of the disease, from the next step on.
+     *
+     * @param model The model.
+     */
+    public void setModel(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Follow an organism that has been infected other than by the
+     * epidemic, such as one born infected.
+     *
+     * @param organism The infected organism.
+     */
+    public void add(Organism organism) {
+        if (size == infected.length) {
+            infected = Arrays.copyOf(infected, size * 2);
+        }
+        infected[size++] = organism;
+    }
+
+    /**
+     * Stop following every organism, keeping the space.
+     */
+    public void clear() {
+        Arrays.fill(infected, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Take a step of the disease: the infectious infect their neighbours
+     * and the disease runs its course in those infected before the step.
+     * The organisms that have died or recovered are dropped. Each organism
+     * draws its random numbers for the step and its cell.
+     *
+     * @param step The step being taken.
+     * @param field The field of the organisms.
+     * @param random The generator of the run.
+     */
+    public void step(long step, Field field, CounterRandom random) {
+        int spreading = size;
+        int kept = 0;
+        for (int i = 0; i < spreading; i++) {
+            Organism organism = infected[i];
+            if (!organism.isAlive() || !organism.isInfected()) {
+                continue;
+            }
+            long cell = organism.getCell();
+            random.at(step, cell, CounterRandom.EPIDEMIC);
+            if (organism.isInfectious()) {
+                if (organism.isCarrier()) {
+                    infectNeighbours(organism, cell, field, random);
+                }
+                if (model != Model.SI && random.nextDouble() <= RECOVERY_PROBABILITY) {
+                    organism.recover();
+                    continue;
+                }
+            } else if (random.nextDouble() <= ONSET_PROBABILITY) {
+                organism.setInfected(true);
+            }
+            infected[kept++] = organism;
+        }
+        // Those infected in this step follow the rest.
+        int added = size - spreading;
+        System.arraycopy(infected, spreading, infected, kept, added);
+        Arrays.fill(infected, kept + added, size, null);
+        size = kept + added;
+    }
+
+    /**
+     * Let an infectious organism infect the susceptible organisms and
+     * plants of a plant layer in the cells next to its own. One number
+     * is drawn for each occupied cell, whatever is in it.
+     *
+     * @param organism The infectious organism.
+     * @param cell The index of its cell.
+     * @param field The field.
+     * @param random The generator, at the organism's place.
+     */
+    private void infectNeighbours(Organism organism, long cell, Field field, CounterRandom random) {
+        int occupied = field.adjacentMask(cell) & ~field.freeAdjacentMask(cell);
+        for (; occupied != 0; occupied &= occupied - 1) {
+            long where = field.adjacentIndex(cell, Integer.numberOfTrailingZeros(occupied));
+            double draw = random.nextDouble();
+            Organism neighbour = (Organism) field.getObjectAt(where);
+            if (neighbour == null) {
+                // a plant of the plant layer, never of the infecting species
+                PlantLayer plants = field.getPlantLayer();
+                if (plants != null && plants.hasPlant(where) && !plants.isInfected(where)
+                        && draw <= plants.getInfectedProbability()) {
+                    plants.setInfected(where);
+                }
+                continue;
+            }
+            if (!neighbour.isSusceptible()) {
+                continue;
+            }
+            double probability = neighbour.getInfectedProbability();
+            if (neighbour.getSpecies() == organism.getSpecies()) {
+                probability *= SAME_SPECIES_FACTOR;
+            }
+            if (draw <= probability) {
+                if (model == Model.SEIR) {
+                    neighbour.setExposed();
+                } else {
+                    neighbour.setInfected(true);
+                }
+                add(neighbour);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package simulator;
+
+import field.Field;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * An observer that measures how much memory the simulation allocates
+ * each step once it has settled down, to keep a check on garbage. It
+ * counts what every thread of the process allocates between the end of
+ * the warm-up and the latest step, so other work in the process should
+ * be kept out of the way while measuring.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class AllocationMeter implements SimulatorObserver {
+    // Reports the bytes allocated by each thread.
+    private final com.sun.management.ThreadMXBean threads;
+    // The number of steps not measured, while the simulation warms up.
+    private final int warmUp;
+    // The first step seen, and the step the measure started at.
+    private int firstStep = -1;
+    private int startStep = -1;
+    // The bytes allocated when the measure started.
+    private long startBytes;
+    // The latest step seen.
+    private int lastStep;
+
+    /**
+     * Create a meter.
+     *
+     * @param warmUp The number of steps to leave out at the start.
+     * @throws UnsupportedOperationException If the virtual machine cannot
+     *         measure allocation.
+     */
+    public AllocationMeter(int warmUp) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("this virtual machine cannot measure allocation");
+        }
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Start measuring once the warm-up is over.
+     */
+    @Override
+    public void stepCompleted(int step, Field field, boolean isNight, boolean isRaining) {
+        if (firstStep < 0) {
+            firstStep = step;
+        }
+        if (startStep < 0 && step >= firstStep + warmUp) {
+            startStep = step;
+            startBytes = allocatedBytes();
+        }
+        lastStep = step;
+    }
+
+    /**
+     * @return The average number of bytes allocated a step since the
+     *         warm-up, or -1 if no step has been measured.
+     */
+    public long getBytesPerStep() {
+        if (startStep < 0 || lastStep == startStep) {
+            return -1;
+        }
+        return (allocatedBytes() - startBytes) / (lastStep - startStep);
+    }
+
+    /**
+     * @return The bytes allocated so far by the threads alive.
+     */
+    private long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // -1 for a thread that has ended meanwhile.
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+}
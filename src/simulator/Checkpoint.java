@@ -0,0 +1,250 @@
+package simulator;
+
+import field.SpeciesRegistry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The full state of a simulation between two steps: the step, the time
+ * of day and the weather, the seed of the run, and every organism in
+ * the order it acts in, each as its cell, its packed state (see
+ * Organism.packState) and its id. A simulation restored from a
+ * checkpoint carries on exactly as the one it was taken from.
+ *
+ * On disk a checkpoint is big endian: the magic "CKPT" and a version,
+ * the depth and width, the step, a byte of flags (1 for night, 2 for
+ * rain), the rain time, the seed as a long, the number of species and
+ * the class name of each in code order, the number of organisms, and
+ * then three longs for each organism: its cell, its packed state and
+ * its id. The plants of a plant layer come last, with an id of -1, and
+ * are given new ids if restored as organisms.
+ *
+ * Version 1 had no ids; organisms restored from it are given new ones.
+ * Versions 1 to 3 hold the state of an earlier random generator instead
+ * of the seed, so they can be replayed from but not resumed.
+ *
+ * Files are written whole to a temporary file and then moved into
+ * place, so a checkpoint is never seen half written.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class Checkpoint {
+    // The start of a checkpoint file, and its version.
+    private static final int MAGIC = 0x434B5054;
+    private static final int VERSION = 4;
+    // The size of the buffer files are written and read through.
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    final int depth, width;
+    final int step;
+    final boolean isNight, isRaining;
+    final int rainTime;
+    // The seed of the run, and whether the checkpoint holds it.
+    final long seed;
+    final boolean hasSeed;
+    // The class names of the species, by code from 1.
+    final String[] species;
+    // The cell, packed state and id of each organism, in acting order.
+    // The ids are null in a checkpoint read from version 1.
+    final long[] cells, states, ids;
+
+    Checkpoint(int depth, int width, int step, boolean isNight, boolean isRaining, int rainTime,
+               long seed, boolean hasSeed, String[] species, long[] cells, long[] states,
+               long[] ids) {
+        this.depth = depth;
+        this.width = width;
+        this.step = step;
+        this.isNight = isNight;
+        this.isRaining = isRaining;
+        this.rainTime = rainTime;
+        this.seed = seed;
+        this.hasSeed = hasSeed;
+        this.species = species;
+        this.cells = cells;
+        this.states = states;
+        this.ids = ids;
+    }
+
+    /**
+     * @return The class names of the species registered now, by code from 1.
+     */
+    static String[] registeredSpecies() {
+        String[] names = new String[SpeciesRegistry.getCount()];
+        for (int code = 1; code <= names.length; code++) {
+            names[code - 1] = SpeciesRegistry.classOf(code).getName();
+        }
+        return names;
+    }
+
+    /**
+     * Tell whether another checkpoint holds the same world as this one:
+     * the same step, time of day, weather and seed, and the same
+     * organisms in the same order, in the same cells and states. The ids
+     * are not compared, as a run restored in the same program as the run
+     * it was taken from gives its young other ids.
+     *
+     * @param other The other checkpoint.
+     * @return true if the worlds are the same.
+     */
+    public boolean sameWorldAs(Checkpoint other) {
+        return depth == other.depth && width == other.width && step == other.step
+                && isNight == other.isNight && isRaining == other.isRaining && rainTime == other.rainTime
+                && seed == other.seed && hasSeed == other.hasSeed
+                && Arrays.equals(species, other.species)
+                && Arrays.equals(cells, other.cells) && Arrays.equals(states, other.states);
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The step the checkpoint was taken after.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * @return Whether the checkpoint holds the ids of the organisms.
+     */
+    public boolean hasIds() {
+        return ids != null;
+    }
+
+    /**
+     * @return The number of organisms in the checkpoint.
+     */
+    public int getOrganismCount() {
+        return cells.length;
+    }
+
+    /**
+     * Write the checkpoint to a file, replacing any file already there.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(depth).putInt(width).putInt(step)
+                    .put((byte) ((isNight ? 1 : 0) | (isRaining ? 2 : 0))).putInt(rainTime)
+                    .putLong(seed).putInt(species.length);
+            for (String name : species) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) bytes.length).put(bytes);
+            }
+            buffer.putInt(cells.length);
+            for (int i = 0; i < cells.length; i++) {
+                if (buffer.remaining() < 24) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(cells[i]).putLong(states[i]).putLong(ids[i]);
+            }
+            drain(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a checkpoint written by write.
+     *
+     * @param path The file to read.
+     * @return The checkpoint.
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.flip();
+            fill(channel, buffer, 37);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a checkpoint");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(path + " has unsupported checkpoint version " + version);
+            }
+            int depth = buffer.getInt();
+            int width = buffer.getInt();
+            int step = buffer.getInt();
+            int flags = buffer.get();
+            int rainTime = buffer.getInt();
+            long seed = buffer.getLong();
+            String[] species = new String[buffer.getInt()];
+            for (int i = 0; i < species.length; i++) {
+                fill(channel, buffer, 2);
+                byte[] bytes = new byte[buffer.getShort()];
+                fill(channel, buffer, bytes.length);
+                buffer.get(bytes);
+                species[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            fill(channel, buffer, 4);
+            int count = buffer.getInt();
+            long[] cells = new long[count];
+            long[] states = new long[count];
+            long[] ids = version > 1 ? new long[count] : null;
+            for (int i = 0; i < count; i++) {
+                fill(channel, buffer, ids != null ? 24 : 16);
+                cells[i] = buffer.getLong();
+                states[i] = buffer.getLong();
+                if (ids != null) {
+                    ids[i] = buffer.getLong();
+                }
+            }
+            return new Checkpoint(depth, width, step, (flags & 1) != 0, (flags & 2) != 0, rainTime,
+                    seed, version > 3, species, cells, states, ids);
+        }
+    }
+
+    /**
+     * Write out everything in the buffer and make it ready to be filled again.
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read until the buffer holds at least the given number of bytes.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("checkpoint ends early");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,108 @@
+package simulator;
+
+import field.Field;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An observer that saves a checkpoint of the simulation every so many
+ * steps, replacing the one saved before. The state is captured between
+ * steps, which is quick, and written out on a background thread while
+ * the simulation carries on. If the previous checkpoint is still being
+ * written when the next is due, the next one is skipped rather than
+ * holding up the simulation.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class CheckpointWriter implements SimulatorObserver {
+    // The simulation saved.
+    private SimulationEngine engine;
+    // The file the checkpoints are written to.
+    private Path path;
+    // The number of steps between checkpoints.
+    private int interval;
+    // The thread the checkpoints are written on.
+    private ExecutorService writer;
+    // The checkpoint being written, if any.
+    private Future<?> pending;
+    // The number of checkpoints skipped, and the first failure to write one.
+    private int skipped;
+    private volatile IOException failure;
+
+    /**
+     * Create a writer for the given simulation.
+     *
+     * @param engine The simulation to save.
+     * @param path The file to write the checkpoints to.
+     * @param interval The number of steps between checkpoints; at least 1.
+     */
+    public CheckpointWriter(SimulationEngine engine, Path path, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be at least 1: " + interval);
+        }
+        this.engine = engine;
+        this.path = path;
+        this.interval = interval;
+        writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Save a checkpoint if the step is one that is saved.
+     */
+    @Override
+    public void stepCompleted(int step, Field field, boolean isNight, boolean isRaining) {
+        if (step == 0 || step % interval != 0) {
+            return;
+        }
+        if (pending != null && !pending.isDone()) {
+            skipped++;
+            return;
+        }
+        Checkpoint checkpoint = engine.checkpoint();
+        pending = writer.submit(() -> {
+            try {
+                checkpoint.write(path);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The number of checkpoints skipped because the one before
+     *         was still being written.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Wait for the checkpoint being written, if any, and stop the
+     * background thread.
+     *
+     * @throws IOException If any checkpoint could not be written.
+     */
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package simulator;
+
+import field.Field;
+import utils.Randomizer;
+import utils.RandomStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Runs many independent simulations of one configuration at once, each
+ * from its own seed, and gathers their populations into ensemble
+ * statistics. Runs are spread over a work-stealing pool; each run binds
+ * a generator of its own to the thread it runs on, so runs do not share
+ * any random state and each gives the same results as it would alone.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class EnsembleRunner {
+    // Creates a fresh field for each run.
+    private Supplier<Field> fieldFactory;
+    // The number of steps in each run.
+    private int steps;
+    // The threads the runs are spread over.
+    private ForkJoinPool pool;
+
+    /**
+     * Create a runner.
+     *
+     * @param fieldFactory Creates a fresh field for each run.
+     * @param steps The number of steps in each run.
+     * @param parallelism The number of runs to execute at once.
+     */
+    public EnsembleRunner(Supplier<Field> fieldFactory, int steps, int parallelism) {
+        if (steps < 0 || parallelism < 1) {
+            throw new IllegalArgumentException("steps must not be negative and parallelism must be positive");
+        }
+        this.fieldFactory = fieldFactory;
+        this.steps = steps;
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Run one simulation for each of the given seeds and gather the
+     * results. Runs that cease to be viable stop early.
+     *
+     * @param seeds The seeds of the runs.
+     * @return The statistics of the runs.
+     */
+    public EnsembleStatistics run(long[] seeds) {
+        int species = SimulationEngine.getSpeciesCount();
+        EnsembleStatistics statistics = new EnsembleStatistics(steps, species, seeds.length);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(seeds.length);
+        for (long seed : seeds) {
+            tasks.add(ForkJoinTask.adapt(() -> runOne(seed, species, statistics)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        return statistics;
+    }
+
+    /**
+     * Stop the threads of the runner.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Run one simulation and add it to the statistics.
+     */
+    private void runOne(long seed, int species, EnsembleStatistics statistics) {
+        Randomizer.bind(new RandomStream(seed));
+        try {
+            int[][] counts = new int[steps + 1][species + 1];
+            SimulationEngine engine = new SimulationEngine(fieldFactory.get());
+            engine.addObserver((step, field, isNight, isRaining) -> {
+                for (int code = 1; code <= species; code++) {
+                    counts[step][code] = field.getPopulation(code);
+                }
+            });
+            engine.simulate(steps);
+            statistics.addRun(counts, engine.getStep());
+        } finally {
+            Randomizer.unbind();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package simulator;
+
+import field.SpeciesRegistry;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Statistics of the population of each species, step by step, over an
+ * ensemble of runs of the same configuration. Runs are added as they
+ * finish, in any order; the mean and variance are kept up to date as
+ * each run arrives, and the counts themselves are kept for quantiles.
+ *
+ * A run that stops early, because it ceased to be viable, only adds to
+ * the steps it reached, so later steps may have fewer samples.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class EnsembleStatistics {
+    // The number of steps after the starting state, and of species.
+    private final int steps, species;
+    // The number of runs that reached each step.
+    private final int[] samples;
+    // The running mean and sum of squared deviations, by step and species.
+    private final double[][] means, squares;
+    // The counts of every run, by step and species, in order of arrival.
+    private final int[][][] counts;
+    // The number of runs added.
+    private int runs;
+
+    /**
+     * Create empty statistics.
+     *
+     * @param steps The number of steps in a run.
+     * @param species The number of species codes to follow, from 1.
+     * @param runs The number of runs expected.
+     */
+    public EnsembleStatistics(int steps, int species, int runs) {
+        this.steps = steps;
+        this.species = species;
+        samples = new int[steps + 1];
+        means = new double[steps + 1][species + 1];
+        squares = new double[steps + 1][species + 1];
+        counts = new int[steps + 1][species + 1][runs];
+    }
+
+    /**
+     * Add the counts of a finished run.
+     *
+     * @param runCounts The population by step and species code.
+     * @param lastStep The last step the run reached.
+     */
+    public synchronized void addRun(int[][] runCounts, int lastStep) {
+        for (int step = 0; step <= lastStep; step++) {
+            int n = ++samples[step];
+            for (int code = 1; code <= species; code++) {
+                int value = runCounts[step][code];
+                double delta = value - means[step][code];
+                means[step][code] += delta / n;
+                squares[step][code] += delta * (value - means[step][code]);
+                counts[step][code][n - 1] = value;
+            }
+        }
+        runs++;
+    }
+
+    /**
+     * @return The number of runs added.
+     */
+    public synchronized int getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return The number of steps after the starting state.
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @param step A step.
+     * @return The number of runs that reached the step.
+     */
+    public synchronized int getSamples(int step) {
+        return samples[step];
+    }
+
+    /**
+     * @param step A step.
+     * @param code A species code.
+     * @return The mean population of the species at the step.
+     */
+    public synchronized double getMean(int step, int code) {
+        return means[step][code];
+    }
+
+    /**
+     * @param step A step.
+     * @param code A species code.
+     * @return The sample variance of the population of the species at
+     *         the step, or 0 with fewer than two samples.
+     */
+    public synchronized double getVariance(int step, int code) {
+        int n = samples[step];
+        return n < 2 ? 0 : squares[step][code] / (n - 1);
+    }
+
+    /**
+     * Return a quantile of the population of a species at a step,
+     * interpolating linearly between the nearest samples.
+     *
+     * @param step A step.
+     * @param code A species code.
+     * @param q The quantile, between 0 and 1.
+     * @return The quantile, or NaN if no run reached the step.
+     */
+    public synchronized double getQuantile(int step, int code, double q) {
+        int n = samples[step];
+        if (n == 0) {
+            return Double.NaN;
+        }
+        int[] sorted = Arrays.copyOf(counts[step][code], n);
+        Arrays.sort(sorted);
+        double position = q * (n - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(below + 1, n - 1);
+        return sorted[below] + (position - below) * (sorted[above] - sorted[below]);
+    }
+
+    /**
+     * Write the statistics as comma separated values, one line for
+     * each step and species.
+     *
+     * @param out Where to write the lines.
+     */
+    public synchronized void write(PrintStream out) {
+        out.println("step,species,runs,mean,variance,p05,p25,p50,p75,p95");
+        for (int step = 0; step <= steps; step++) {
+            if (samples[step] == 0) {
+                break;
+            }
+            for (int code = 1; code <= species; code++) {
+                out.printf("%d,%s,%d,%.3f,%.3f,%.1f,%.1f,%.1f,%.1f,%.1f%n", step,
+                        SpeciesRegistry.classOf(code).getSimpleName(), samples[step],
+                        getMean(step, code), getVariance(step, code),
+                        getQuantile(step, code, 0.05), getQuantile(step, code, 0.25),
+                        getQuantile(step, code, 0.5), getQuantile(step, code, 0.75),
+                        getQuantile(step, code, 0.95));
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package simulator;
+
+import animals.DeathCause;
+import animals.Organism;
+import animals.OrganismListener;
+import field.Field;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An append-only journal of everything that happens to the organisms of
+ * a simulation: births, moves, infections and deaths with their cause.
+ * Together with a checkpoint it is enough to rebuild the field as it was
+ * after any later step (see JournalReplay), without running the model.
+ *
+ * Organisms add events to a lock-free ring, so the threads that act never
+ * wait for the disk; a background thread drains the ring into a series
+ * of segment files in the journal's directory. Attaching the journal to
+ * a simulation saves a checkpoint of its state at that moment, BASE_NAME,
+ * to replay from.
+ *
+ * Each segment starts with a header of four big endian ints: the magic
+ * "JRNL", the version, the number of the segment and the size of a
+ * record. Then come the records, each three big endian longs:
+ *
+ *   the type in the lowest byte, then a byte of detail (the species code
+ *   of a birth, the cause of a death), then a byte of flags (1 for male,
+ *   2 for infected), a spare byte, and the step in the highest 32 bits;
+ *   the id of the organism;
+ *   its cell, after the event.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class EventJournal implements OrganismListener, SimulatorObserver {
+    // The types of record.
+    static final int BORN = 1;
+    static final int MOVED = 2;
+    static final int INFECTION = 3;
+    static final int DIED = 4;
+    // The flags of a record.
+    static final int FLAG_MALE = 1;
+    static final int FLAG_INFECTED = 2;
+    // The name of the checkpoint saved when the journal is attached.
+    public static final String BASE_NAME = "base.ckpt";
+    // The start of a segment, its version and the size of its header.
+    static final int MAGIC = 0x4A524E4C;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    // The number of records in a full segment.
+    private static final int SEGMENT_RECORDS = 1 << 20;
+    // The number of records the ring holds.
+    private static final int RING_RECORDS = 1 << 16;
+    // How long the writer sleeps when there is nothing to write.
+    private static final long IDLE_NANOS = 1_000_000;
+
+    // The directory the segments are written to.
+    private final Path directory;
+    // The events not yet written.
+    private final EventRing ring = new EventRing(RING_RECORDS);
+    // The thread writing the segments.
+    private final Thread writer;
+    // The step being taken, stamped on each event.
+    private volatile int step;
+    private volatile boolean closed;
+    // The first failure to write, if any.
+    private volatile IOException failure;
+    // The number of records written.
+    private volatile long written;
+
+    /**
+     * Create a journal writing to the given directory, which is created
+     * if need be. Any journal already in the directory is deleted.
+     *
+     * @param directory The directory.
+     * @throws IOException If the directory cannot be created or emptied.
+     */
+    public EventJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        for (int segment = 0; Files.deleteIfExists(segmentPath(directory, segment)); segment++) {
+            // Delete the segments of an earlier journal.
+        }
+        writer = new Thread(this::write, "journal writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Save a checkpoint of the simulation in the journal's directory and
+     * record everything that happens to its organisms from now on.
+     *
+     * @param engine The simulation.
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public void attach(SimulationEngine engine) throws IOException {
+        engine.checkpoint().write(directory.resolve(BASE_NAME));
+        engine.addObserver(this);
+        engine.setListener(this);
+    }
+
+    /**
+     * @param directory A journal directory.
+     * @param segment The number of a segment.
+     * @return The path of the segment.
+     */
+    static Path segmentPath(Path directory, int segment) {
+        return directory.resolve(String.format("journal-%06d.seg", segment));
+    }
+
+    /**
+     * Note the step about to be taken.
+     */
+    @Override
+    public void stepCompleted(int step, Field field, boolean isNight, boolean isRaining) {
+        this.step = step + 1;
+    }
+
+    @Override
+    public void born(Organism organism) {
+        add(BORN, organism.getSpecies(), organism, organism.getCell());
+    }
+
+    @Override
+    public void moved(Organism organism, long from) {
+        add(MOVED, 0, organism, organism.getCell());
+    }
+
+    @Override
+    public void infectionChanged(Organism organism) {
+        add(INFECTION, 0, organism, organism.getCell());
+    }
+
+    @Override
+    public void died(Organism organism, long cell, DeathCause cause) {
+        add(DIED, cause.ordinal(), organism, cell);
+    }
+
+    private void add(int type, int detail, Organism organism, long cell) {
+        int flags = (organism.isMale() ? FLAG_MALE : 0) | (organism.isInfected() ? FLAG_INFECTED : 0);
+        ring.add(type | detail << 8 | flags << 16 | (long) step << 32, organism.getId(), cell);
+    }
+
+    /**
+     * @return The number of records written so far.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Write out every event recorded and stop the writer. Events recorded
+     * after this are lost.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The loop of the writer: drain the ring into segments until closed
+     * and empty. After a failure the events are drained and dropped, so
+     * the simulation never waits on a full ring.
+     */
+    private void write() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EventRing.RECORD_BYTES * 4096);
+        FileChannel channel = null;
+        int segment = 0;
+        int inSegment = SEGMENT_RECORDS;
+        while (!closed || !ring.isEmpty()) {
+            if (inSegment == SEGMENT_RECORDS) {
+                if (failure == null) {
+                    try {
+                        if (channel != null) {
+                            channel.close();
+                        }
+                        channel = FileChannel.open(segmentPath(directory, segment), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                        header.putInt(MAGIC).putInt(VERSION).putInt(segment).putInt(EventRing.RECORD_BYTES);
+                        header.flip();
+                        writeFully(channel, header);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                segment++;
+                inSegment = 0;
+            }
+            int count = ring.drainTo(buffer, SEGMENT_RECORDS - inSegment);
+            inSegment += count;
+            // Write when caught up, when the buffer or segment is full, and
+            // always once closed, as the loop may end before catching up again.
+            if (buffer.position() > 0 && (count == 0 || !buffer.hasRemaining()
+                    || inSegment == SEGMENT_RECORDS || closed)) {
+                buffer.flip();
+                if (failure == null) {
+                    try {
+                        writeFully(channel, buffer);
+                        written += buffer.limit() / EventRing.RECORD_BYTES;
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                buffer.clear();
+            } else if (count == 0 && !closed) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+        if (channel != null) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package simulator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A ring buffer of fixed-width records, each three longs, that any
+ * number of threads may add to and one thread takes from, without locks.
+ * A thread adding a record claims the next sequence number, writes the
+ * record into its slot and then marks the slot as published with that
+ * number; the taker reads slots in sequence order as they are published.
+ * When the ring is full, adding waits for the taker to catch up.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+class EventRing {
+    // The number of longs in a record, and of bytes.
+    static final int RECORD_LONGS = 3;
+    static final int RECORD_BYTES = RECORD_LONGS * Long.BYTES;
+
+    // The number of slots, a power of two, less one.
+    private final int mask;
+    // The records, RECORD_LONGS longs per slot.
+    private final long[] records;
+    // For each slot, one more than the sequence number of the record
+    // published in it, or 0 if none has been.
+    private final AtomicLongArray published;
+    // The next sequence number to be claimed.
+    private final AtomicLong claimed = new AtomicLong();
+    // The sequence number of the next record to be taken.
+    private volatile long taken;
+
+    /**
+     * Create an empty ring.
+     *
+     * @param capacity The number of records it holds, rounded up to a power of two.
+     */
+    EventRing(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mask = slots - 1;
+        records = new long[slots * RECORD_LONGS];
+        published = new AtomicLongArray(slots);
+    }
+
+    /**
+     * Add a record, waiting while the ring is full. Safe to call from
+     * any number of threads at once.
+     */
+    void add(long first, long second, long third) {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - taken > mask) {
+            Thread.onSpinWait();
+        }
+        int slot = (int) sequence & mask;
+        int base = slot * RECORD_LONGS;
+        records[base] = first;
+        records[base + 1] = second;
+        records[base + 2] = third;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * Move published records, in order, into a buffer while it has room
+     * and there are no more than the given number. Only one thread may
+     * take records.
+     *
+     * @param buffer The buffer to put the records in.
+     * @param limit The most records to take.
+     * @return The number of records taken.
+     */
+    int drainTo(ByteBuffer buffer, int limit) {
+        long next = taken;
+        int count = 0;
+        while (count < limit && buffer.remaining() >= RECORD_BYTES) {
+            int slot = (int) next & mask;
+            if (published.get(slot) != next + 1) {
+                break;
+            }
+            int base = slot * RECORD_LONGS;
+            buffer.putLong(records[base]).putLong(records[base + 1]).putLong(records[base + 2]);
+            next++;
+            count++;
+        }
+        taken = next;
+        return count;
+    }
+
+    /**
+     * @return Whether every record claimed so far has been taken.
+     */
+    boolean isEmpty() {
+        return taken == claimed.get();
+    }
+}
@@ -0,0 +1,194 @@
+package simulator;
+
+import animals.Organism;
+import field.Field;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds the field of a simulation as it was after a given step from a
+ * checkpoint and the journal of events written since (see EventJournal),
+ * without running the model. Each organism is followed by its id, so the
+ * order in which organisms acting at the same time were recorded does
+ * not matter.
+ *
+ * The field is rebuilt with every organism of the step in its cell, with
+ * its species, sex and infection. An organism's age and food level are
+ * not journaled: they are as in the checkpoint, or as at birth.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class JournalReplay {
+    // The checkpoint replayed from.
+    private Checkpoint base;
+    // The directory of the journal.
+    private Path directory;
+
+    /**
+     * Prepare to replay a journal from a checkpoint.
+     *
+     * @param base The checkpoint, taken no later than the journal starts.
+     * @param directory The directory of the journal.
+     * @throws IllegalArgumentException If the checkpoint holds no organism ids.
+     */
+    public JournalReplay(Checkpoint base, Path directory) {
+        if (!base.hasIds()) {
+            throw new IllegalArgumentException("the checkpoint holds no organism ids");
+        }
+        this.base = base;
+        this.directory = directory;
+    }
+
+    /**
+     * Prepare to replay the journal in a directory from the checkpoint
+     * saved when it was attached.
+     *
+     * @param directory The directory of the journal.
+     * @return The replay.
+     * @throws IOException If the checkpoint cannot be read.
+     */
+    public static JournalReplay of(Path directory) throws IOException {
+        return new JournalReplay(Checkpoint.read(directory.resolve(EventJournal.BASE_NAME)), directory);
+    }
+
+    /**
+     * @return The checkpoint replayed from.
+     */
+    public Checkpoint getBase() {
+        return base;
+    }
+
+    /**
+     * Rebuild the field as it was after the given step.
+     *
+     * @param step The step, no earlier than the checkpoint.
+     * @param field The field to rebuild into, of the checkpoint's size.
+     *              It is cleared first.
+     * @return The last step found in the journal, if earlier than the
+     *         step asked for; otherwise the step.
+     * @throws IOException If the journal cannot be read.
+     * @throws IllegalArgumentException If the step is before the
+     *         checkpoint or the field is of the wrong size.
+     */
+    public int replay(int step, Field field) throws IOException {
+        if (step < base.step) {
+            throw new IllegalArgumentException("step " + step + " is before the checkpoint at step " + base.step);
+        }
+        if (field.getDepth() != base.depth || field.getWidth() != base.width) {
+            throw new IllegalArgumentException("the checkpoint is of a " + base.depth + "x" + base.width + " field");
+        }
+        // The cell and packed state of each organism alive, by id.
+        Map<Long, long[]> organisms = new HashMap<>();
+        for (int i = 0; i < base.ids.length; i++) {
+            organisms.put(base.ids[i], new long[] {base.cells[i], base.states[i]});
+        }
+        int reached = apply(organisms, step);
+
+        field.clear();
+        Constructor<?>[] constructors = new Constructor<?>[base.species.length + 1];
+        for (long[] organism : organisms.values()) {
+            SimulationEngine.recreate(field, organism[0], organism[1], constructors);
+        }
+        field.stepFinished();
+        return reached;
+    }
+
+    /**
+     * Apply the events of the journal up to the end of the given step.
+     *
+     * @return The last step applied.
+     */
+    private int apply(Map<Long, long[]> organisms, int step) throws IOException {
+        int reached = base.step;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EventRing.RECORD_BYTES * 4096);
+        for (int segment = 0; Files.exists(EventJournal.segmentPath(directory, segment)); segment++) {
+            try (FileChannel channel = FileChannel.open(EventJournal.segmentPath(directory, segment),
+                    StandardOpenOption.READ)) {
+                readHeader(channel, segment);
+                buffer.clear();
+                int read;
+                do {
+                    read = channel.read(buffer);
+                    buffer.flip();
+                    while (buffer.remaining() >= EventRing.RECORD_BYTES) {
+                        long head = buffer.getLong();
+                        long id = buffer.getLong();
+                        long cell = buffer.getLong();
+                        int recordStep = (int) (head >>> 32);
+                        if (recordStep > step) {
+                            return step;
+                        }
+                        if (recordStep > base.step) {
+                            applyOne(organisms, (int) head & 0xFF, (int) (head >>> 8) & 0xFF,
+                                    (int) (head >>> 16) & 0xFF, id, cell);
+                            reached = recordStep;
+                        }
+                    }
+                    // A record cut short by a crash is left over at the end.
+                    buffer.compact();
+                } while (read >= 0);
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Apply one event.
+     */
+    private static void applyOne(Map<Long, long[]> organisms, int type, int detail, int flags, long id, long cell) {
+        switch (type) {
+            case EventJournal.BORN:
+                organisms.put(id, new long[] {cell, withFlags(detail, flags)});
+                break;
+            case EventJournal.MOVED:
+                long[] mover = organisms.get(id);
+                if (mover != null) {
+                    mover[0] = cell;
+                }
+                break;
+            case EventJournal.INFECTION:
+                long[] infected = organisms.get(id);
+                if (infected != null) {
+                    infected[1] = withFlags(infected[1], flags);
+                }
+                break;
+            case EventJournal.DIED:
+                organisms.remove(id);
+                break;
+            default:
+                // Unknown events are skipped.
+        }
+    }
+
+    /**
+     * @return The packed state with the sex and infection of the flags of a record.
+     */
+    private static long withFlags(long state, int flags) {
+        return Organism.withFlags(state, (flags & EventJournal.FLAG_MALE) != 0,
+                (flags & EventJournal.FLAG_INFECTED) != 0);
+    }
+
+    private static void readHeader(FileChannel channel, int segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(EventJournal.HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new EOFException("journal segment " + segment + " has no header");
+            }
+        }
+        header.flip();
+        if (header.getInt() != EventJournal.MAGIC || header.getInt() != EventJournal.VERSION
+                || header.getInt() != segment || header.getInt() != EventRing.RECORD_BYTES) {
+            throw new IOException("journal segment " + segment + " is not part of a journal this version reads");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package simulator;
+
+import animals.Organism;
+import animals.OrganismPool;
+import utils.CounterRandom;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The organisms of a simulation, in the order they act. It is a list, so
+ * that the organisms acting can add their young to it directly: the young
+ * go on the end and do not act until the next step. Organisms that die
+ * are dropped in a single pass once everyone has acted, keeping the order
+ * of the rest, rather than one by one; and the space is kept from step
+ * to step.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+class OrganismStore extends AbstractList<Organism> implements RandomAccess {
+    // The organisms, with room to spare after the last.
+    private Organism[] organisms = new Organism[64];
+    // The number of organisms.
+    private int size;
+
+    @Override
+    public Organism get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("no organism " + index + " of " + size);
+        }
+        return organisms[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an organism at the end.
+     */
+    @Override
+    public boolean add(Organism organism) {
+        if (size == organisms.length) {
+            organisms = Arrays.copyOf(organisms, size * 2);
+        }
+        organisms[size++] = organism;
+        return true;
+    }
+
+    /**
+     * Add all the organisms of another store at the end, in order.
+     *
+     * @param other The other store.
+     */
+    void addAll(OrganismStore other) {
+        if (size + other.size > organisms.length) {
+            organisms = Arrays.copyOf(organisms, Math.max(size + other.size, size * 2));
+        }
+        System.arraycopy(other.organisms, 0, organisms, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Remove every organism, keeping the space.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(organisms, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Let each organism in the store act, in order; each reads the time
+     * of day and the weather at its cell from the field, and draws its
+     * random numbers for the step and the cell it starts in. Those that
+     * have died since the step began or are dormant (see
+     * Organism.isDormant) are skipped. Their young are added at the end
+     * and do not act. Afterwards the organisms that have died are
+     * removed and retired to the pool, and the young follow the
+     * survivors.
+     *
+     * @param step The step being taken.
+     * @param pool The pool the dead are retired to.
+     * @param random The generator bound to the thread, to be put at
+     *               each organism's place in turn.
+     * @return The index of the first of the young.
+     */
+    int act(int step, OrganismPool pool, CounterRandom random) {
+        int acting = size;
+        int kept = 0;
+        for (int i = 0; i < acting; i++) {
+            // Read afresh each time, as the young may have grown the array.
+            Organism organism = organisms[i];
+            if (organism.isAlive() && !organism.isDormant()) {
+                random.at(step, organism.getCell(), CounterRandom.ACT);
+                organism.act(this);
+            }
+            if (organism.isAlive()) {
+                organisms[kept++] = organism;
+            } else {
+                pool.retire(organism);
+            }
+        }
+        int born = size - acting;
+        System.arraycopy(organisms, acting, organisms, kept, born);
+        Arrays.fill(organisms, kept + born, size, null);
+        size = kept + born;
+        return kept;
+    }
+}
@@ -0,0 +1,62 @@
+package simulator;
+
+import field.Field;
+import field.SpeciesRegistry;
+
+import java.io.PrintStream;
+
+/**
+ * An observer that writes the population of each species as comma
+ * separated values, one line for every so many steps, headed by a
+ * line naming the columns.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class PopulationLog implements SimulatorObserver {
+    // Where the lines are written.
+    private PrintStream out;
+    // The number of steps between lines.
+    private int interval;
+    // Whether the header line has been written.
+    private boolean headerWritten;
+
+    /**
+     * Create a log.
+     *
+     * @param out Where to write the lines.
+     * @param interval The number of steps between lines; at least 1.
+     */
+    public PopulationLog(PrintStream out, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be at least 1: " + interval);
+        }
+        this.out = out;
+        this.interval = interval;
+    }
+
+    /**
+     * Write a line for the step, if it is one that is logged.
+     */
+    @Override
+    public void stepCompleted(int step, Field field, boolean isNight, boolean isRaining) {
+        if (step % interval != 0) {
+            return;
+        }
+        if (!headerWritten) {
+            out.print("step");
+            for (int code = 1; code <= SpeciesRegistry.getCount(); code++) {
+                out.print(',');
+                out.print(SpeciesRegistry.classOf(code).getSimpleName());
+            }
+            out.println();
+            headerWritten = true;
+        }
+        out.print(step);
+        for (int code = 1; code <= SpeciesRegistry.getCount(); code++) {
+            out.print(',');
+            out.print(field.getPopulation(code));
+        }
+        out.println();
+    }
+}
@@ -0,0 +1,220 @@
+package simulator;
+
+import field.Field;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An observer that records, for every step, the weather and the number
+ * of animals and of infected animals of each species, in a compact
+ * columnar file that SeriesReader loads or turns into CSV.
+ *
+ * Rows are gathered into chunks of CHUNK_ROWS steps. A full chunk is
+ * handed to a background thread that encodes and writes it; at most
+ * QUEUED_CHUNKS wait to be written. If that many are already waiting the
+ * current chunk just keeps growing until there is room, so the simulation
+ * never waits for the disk and no step is lost.
+ *
+ * The file is big endian: the magic "SERS", a version, the number of
+ * columns, the number of species and the class name of each in code
+ * order. The columns are the step, the weather (1 for night, 2 for
+ * rain), then for each species the number of animals and the number
+ * infected. Then come the chunks, each the number of rows followed by
+ * every column in turn: its length in bytes, then its values, each as
+ * the difference from the value before it in the chunk (from 0 for the
+ * first), zigzag encoded into a variable number of bytes. A chunk of 0
+ * rows ends the file. Chunks can be decoded on their own, and a column
+ * can be skipped without decoding it.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class SeriesExporter implements SimulatorObserver {
+    // The start of a series file, and its version.
+    static final int MAGIC = 0x53455253;
+    static final int VERSION = 1;
+    // The columns before the species columns.
+    static final int STEP_COLUMN = 0;
+    static final int WEATHER_COLUMN = 1;
+    static final int FIRST_SPECIES_COLUMN = 2;
+    // The bits of the weather column.
+    static final int NIGHT = 1;
+    static final int RAINING = 2;
+    // The number of rows in a chunk, and the most chunks waiting to be written.
+    private static final int CHUNK_ROWS = 4096;
+    private static final int QUEUED_CHUNKS = 4;
+
+    // The number of species recorded and of columns.
+    private final int species, columns;
+    // The chunk being filled, column by column, and its number of rows.
+    private int[][] chunk;
+    private int rows;
+    // The chunks waiting to be written, and those written, for reuse.
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private final ConcurrentLinkedQueue<int[][]> spare = new ConcurrentLinkedQueue<>();
+    // Where the file is written, and the thread writing it.
+    private final FileChannel channel;
+    private final Thread writer;
+    // The first failure to write, if any.
+    private volatile IOException failure;
+
+    /**
+     * Create an exporter writing to the given file, replacing any file
+     * already there.
+     *
+     * @param path The file.
+     * @throws IOException If the file cannot be written.
+     */
+    public SeriesExporter(Path path) throws IOException {
+        species = SimulationEngine.getSpeciesCount();
+        columns = FIRST_SPECIES_COLUMN + 2 * species;
+        chunk = new int[columns][CHUNK_ROWS];
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(1024);
+        header.putInt(MAGIC).putInt(VERSION).putInt(columns).putInt(species);
+        for (String name : Checkpoint.registeredSpecies()) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            header.putShort((short) bytes.length).put(bytes);
+        }
+        header.flip();
+        writeFully(header);
+        writer = new Thread(this::write, "series writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Record a row for the step.
+     */
+    @Override
+    public void stepCompleted(int step, Field field, boolean isNight, boolean isRaining) {
+        if (rows == chunk[0].length) {
+            // The writer is behind: grow rather than wait.
+            for (int column = 0; column < columns; column++) {
+                chunk[column] = Arrays.copyOf(chunk[column], rows * 2);
+            }
+        }
+        chunk[STEP_COLUMN][rows] = step;
+        chunk[WEATHER_COLUMN][rows] = (isNight ? NIGHT : 0) | (isRaining ? RAINING : 0);
+        for (int code = 1; code <= species; code++) {
+            int column = FIRST_SPECIES_COLUMN + 2 * (code - 1);
+            chunk[column][rows] = field.getPopulation(code);
+            chunk[column + 1][rows] = field.getInfected(code);
+        }
+        rows++;
+        if (rows >= CHUNK_ROWS && queue.offer(new Chunk(chunk, rows))) {
+            int[][] reused = spare.poll();
+            chunk = reused != null ? reused : new int[columns][CHUNK_ROWS];
+            rows = 0;
+        }
+    }
+
+    /**
+     * Write the rows recorded so far, end the file and stop the writer.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    public void close() throws IOException {
+        try {
+            if (rows > 0) {
+                queue.put(new Chunk(chunk, rows));
+            }
+            queue.put(new Chunk(null, 0));
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The loop of the writer: encode and write chunks until the empty
+     * one that ends the file.
+     */
+    private void write() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + columns * (4 + CHUNK_ROWS * 5));
+        try {
+            while (true) {
+                Chunk next = queue.take();
+                int size = 4 + columns * (4 + next.rows * 5);
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+                buffer.clear();
+                buffer.putInt(next.rows);
+                for (int column = 0; column < columns; column++) {
+                    int lengthAt = buffer.position();
+                    buffer.putInt(0);
+                    int previous = 0;
+                    for (int row = 0; row < next.rows; row++) {
+                        int value = next.columns[column][row];
+                        putVarint(buffer, value - previous);
+                        previous = value;
+                    }
+                    buffer.putInt(lengthAt, buffer.position() - lengthAt - 4);
+                }
+                buffer.flip();
+                if (failure == null) {
+                    try {
+                        writeFully(buffer);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                if (next.rows == 0) {
+                    return;
+                }
+                if (next.columns[0].length == CHUNK_ROWS) {
+                    spare.add(next.columns);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stop writing.
+        }
+    }
+
+    /**
+     * Put a value into the buffer, zigzag encoded, seven bits a byte
+     * with the top bit set on all bytes but the last.
+     */
+    private static void putVarint(ByteBuffer buffer, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) (zigzag & 0x7F | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Rows handed to the writer.
+     */
+    private static class Chunk {
+        final int[][] columns;
+        final int rows;
+
+        Chunk(int[][] columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package simulator;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads a series file written by SeriesExporter, a column at a time or
+ * as CSV, one chunk at a time so that long runs need not fit in memory.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class SeriesReader {
+    // The file read.
+    private final Path path;
+    // The name of each column.
+    private final String[] names;
+
+    /**
+     * Open a series file and read its header.
+     *
+     * @param path The file.
+     * @throws IOException If the file cannot be read or is not a series
+     *         file this version reads.
+     */
+    public SeriesReader(Path path) throws IOException {
+        this.path = path;
+        try (DataInputStream in = open()) {
+            names = readHeader(in);
+        }
+    }
+
+    /**
+     * @return The name of each column, in order: "step", "night",
+     *         "raining", then each species and its number infected.
+     */
+    public String[] getColumnNames() {
+        return names.clone();
+    }
+
+    /**
+     * Read one column in full.
+     *
+     * @param column The index of the column.
+     * @return Its value for every step recorded.
+     * @throws IOException If the file cannot be read.
+     */
+    public int[] column(int column) throws IOException {
+        if (column < 0 || column >= names.length) {
+            throw new IndexOutOfBoundsException("no column " + column);
+        }
+        // The night and raining columns are both bits of the weather column.
+        int stored = column <= SeriesExporter.WEATHER_COLUMN ? column : column - 1;
+        int[] values = new int[0];
+        int size = 0;
+        try (DataInputStream in = open()) {
+            readHeader(in);
+            int[] chunk = new int[0];
+            int rows;
+            while ((rows = in.readInt()) > 0) {
+                if (chunk.length < rows) {
+                    chunk = new int[rows];
+                }
+                for (int c = 0; c < names.length - 1; c++) {
+                    int length = in.readInt();
+                    if (c == stored) {
+                        decode(in, chunk, rows);
+                    } else {
+                        in.skipNBytes(length);
+                    }
+                }
+                if (values.length < size + rows) {
+                    values = Arrays.copyOf(values, Math.max(size + rows, values.length * 2));
+                }
+                for (int row = 0; row < rows; row++) {
+                    values[size + row] = weatherBit(column, chunk[row]);
+                }
+                size += rows;
+            }
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Write the whole series as CSV, with a header line of the column names.
+     *
+     * @param out Where to write.
+     * @throws IOException If the file cannot be read.
+     */
+    public void writeCsv(PrintStream out) throws IOException {
+        out.println(String.join(",", names));
+        try (DataInputStream in = open()) {
+            readHeader(in);
+            int stored = names.length - 1;
+            int[][] chunk = new int[stored][0];
+            StringBuilder line = new StringBuilder();
+            int rows;
+            while ((rows = in.readInt()) > 0) {
+                for (int c = 0; c < stored; c++) {
+                    in.readInt();
+                    if (chunk[c].length < rows) {
+                        chunk[c] = new int[rows];
+                    }
+                    decode(in, chunk[c], rows);
+                }
+                for (int row = 0; row < rows; row++) {
+                    line.setLength(0);
+                    for (int column = 0; column < names.length; column++) {
+                        if (column > 0) {
+                            line.append(',');
+                        }
+                        int c = column <= SeriesExporter.WEATHER_COLUMN ? column : column - 1;
+                        line.append(weatherBit(column, chunk[c][row]));
+                    }
+                    out.println(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The value of a column given the stored value it comes from:
+     *         the night and raining columns are bits of the weather.
+     */
+    private static int weatherBit(int column, int value) {
+        if (column == SeriesExporter.WEATHER_COLUMN) {
+            return (value & SeriesExporter.NIGHT) != 0 ? 1 : 0;
+        } else if (column == SeriesExporter.WEATHER_COLUMN + 1) {
+            return (value & SeriesExporter.RAINING) != 0 ? 1 : 0;
+        }
+        return value;
+    }
+
+    /**
+     * Decode a column of a chunk: zigzag encoded varint differences.
+     */
+    private static void decode(DataInputStream in, int[] values, int rows) throws IOException {
+        int previous = 0;
+        for (int row = 0; row < rows; row++) {
+            int zigzag = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[row] = previous;
+        }
+    }
+
+    private DataInputStream open() throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+    }
+
+    /**
+     * Read the header and return the names of the columns.
+     */
+    private static String[] readHeader(DataInputStream in) throws IOException {
+        try {
+            if (in.readInt() != SeriesExporter.MAGIC || in.readInt() != SeriesExporter.VERSION) {
+                throw new IOException("not a series file this version reads");
+            }
+            int columns = in.readInt();
+            int species = in.readInt();
+            if (columns != SeriesExporter.FIRST_SPECIES_COLUMN + 2 * species) {
+                throw new IOException("the series file is damaged");
+            }
+            // The weather column is read as two.
+            String[] names = new String[columns + 1];
+            names[0] = "step";
+            names[1] = "night";
+            names[2] = "raining";
+            for (int code = 1; code <= species; code++) {
+                byte[] bytes = new byte[in.readUnsignedShort()];
+                in.readFully(bytes);
+                String name = new String(bytes, StandardCharsets.UTF_8);
+                name = name.substring(name.lastIndexOf('.') + 1);
+                names[2 * code + 1] = name;
+                names[2 * code + 2] = name + "_infected";
+            }
+            return names;
+        } catch (EOFException e) {
+            throw new IOException("the series file is cut short", e);
+        }
+    }
+}
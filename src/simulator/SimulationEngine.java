@@ -0,0 +1,606 @@
+package simulator;
+
+import animals.*;
+import animals.prey.day_eaters.Deer;
+import animals.prey.Plant;
+import animals.prey.day_eaters.Capybara;
+import animals.prey.Rat;
+import field.Environment;
+import field.Field;
+import field.FieldStats;
+import field.PlantLayer;
+import field.SpeciesRegistry;
+import infector.Epidemic;
+import utils.Randomizer;
+import utils.CounterRandom;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The model of the predator-prey simulation: a field containing Tigers,
+ * Leopards, Rats, Plants, Capybaras and Deers, together with the time
+ * of day and the weather, which the field's Environment keeps. The
+ * engine does no drawing of its own; views and logs follow it by
+ * registering as observers.
+ *
+ * The engine cuts the field into horizontal stripes of STRIPE_HEIGHT
+ * rows, and the organisms act stripe by stripe: the even stripes, then
+ * the odd ones, and within a stripe in the order they were born. An
+ * organism only reads and writes cells next to its own, so stripes two
+ * apart never touch the same rows, and given a parallelism the stripes
+ * of each kind act at once on several threads.
+ *
+ * Every random number is drawn from a CounterRandom, as a hash of the
+ * seed of the run and the step, the cell of the organism acting and how
+ * many numbers it has drawn. So a run depends on the seed alone: acting
+ * in sequence or in parallel, on any number of threads, gives the same
+ * world, and the seed is all that needs saving of the generator.
+ *
+ * The plants may be kept as a plant layer instead of as organisms, which
+ * grows them all at once after the animals have acted (see PlantLayer).
+ *
+ * Diseases spread once the field has settled at the end of each step,
+ * from the infected organisms alone (see Epidemic).
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class SimulationEngine {
+    // Constants representing configuration information for the simulation.
+    // The probability that a fox will be created in any given grid position.
+    private static final double FOX_CREATION_PROBABILITY = 0.05;
+    // The probability that a rabbit will be created in any given grid position.
+    private static final double RABBIT_CREATION_PROBABILITY = 0.06;
+    // The probability that a deer will be created in any given grid position.
+    private static final double DEER_CREATION_PROBABILITY = 0.06;
+    // The probability that a tiger will be created in any given grid position.
+    private static final double TIGER_CREATION_PROBABILITY = 0.04;
+    // The probability that a tiger will be created in any given grid position.
+    private static final double RAT_CREATION_PROBABILITY = 0.15;
+    // The probability that a plant will be created in any given grid position.
+    private static final double PLANT_CREATION_PROBABILITY = 0.1;
+    // The number of rows in a stripe when acting in parallel; at least 3.
+    private static final int STRIPE_HEIGHT = 8;
+
+    static {
+        // Fix the species codes, whichever observers are attached.
+        SpeciesRegistry.setOf(Capybara.class, Deer.class, Rat.class, Leopard.class, Tiger.class, Plant.class);
+    }
+
+    // The organisms in the field, in the order they act.
+    private OrganismStore organisms;
+    // The current state of the field.
+    private Field field;
+    // The plants of the field, if kept as a plant layer, or null.
+    private PlantLayer plants;
+    // The spread of disease among the organisms.
+    private Epidemic epidemic;
+    // The current step of the simulation.
+    private int step;
+    // The observers told about each step.
+    private List<SimulatorObserver> observers;
+    // The statistics of the field.
+    private FieldStats stats;
+    // The generator of the run, on the thread calling the engine, and its seed.
+    private CounterRandom random;
+    private long seed;
+    // The time of day and the weather over the field.
+    private Environment environment;
+    // The threads used to act in parallel, or null to act in sequence.
+    private ForkJoinPool pool;
+    // The organisms of each stripe, followed by those born in it during a
+    // step, and the index of the first of those born.
+    private OrganismStore[] stripeOrganisms;
+    private int[] stripeFirstBorn;
+    // The task acting on each stripe, and a task acting on all the
+    // stripes of each parity; reused from step to step.
+    private ForkJoinTask<?>[] stripeTasks;
+    private ForkJoinTask<?>[] parityTasks;
+    // The dead organisms kept to be born again by each stripe.
+    private OrganismPool[] stripePools;
+    // The random generator of each stripe.
+    private CounterRandom[] stripeRandoms;
+    // Told about what happens to every organism, or null.
+    private OrganismListener listener;
+
+    /**
+     * Create a simulation of the given field. The field is populated
+     * straight away.
+     *
+     * @param field The field to simulate.
+     */
+    public SimulationEngine(Field field) {
+        this(field, false);
+    }
+
+    /**
+     * Create a simulation of the given field, keeping the plants either
+     * as organisms or as a plant layer. The field is populated straight
+     * away.
+     *
+     * @param field The field to simulate.
+     * @param plantLayer Whether to keep the plants as a plant layer.
+     * @throws IllegalArgumentException If the plants are to be kept as a
+     *         plant layer and the field cannot hold one.
+     */
+    public SimulationEngine(Field field, boolean plantLayer) {
+        this.field = field;
+        environment = field.getEnvironment();
+        if (plantLayer) {
+            plants = Plant.createLayer(field);
+        }
+        epidemic = new Epidemic(Epidemic.Model.SI);
+        organisms = new OrganismStore();
+        observers = new ArrayList<>();
+        stats = new FieldStats();
+        createStripes();
+        reset();
+    }
+
+    /**
+     * @return The number of species taking part in the simulation;
+     *         their codes run from 1 upwards.
+     */
+    public static int getSpeciesCount() {
+        return SpeciesRegistry.getCount();
+    }
+
+    /**
+     * Add an observer, which is immediately shown the current state.
+     *
+     * @param observer The observer to add.
+     */
+    public void addObserver(SimulatorObserver observer) {
+        observers.add(observer);
+        observer.stepCompleted(step, field, environment.isNight(), environment.isRaining());
+    }
+
+    /**
+     * Set the listener told about what happens to every organism, from
+     * now on. Organisms placed by a reset or a restore are not reported
+     * as born.
+     *
+     * @param listener The listener, or null for none.
+     */
+    public void setListener(OrganismListener listener) {
+        this.listener = listener;
+        for (Organism organism : organisms) {
+            organism.setListener(listener);
+        }
+    }
+
+    /**
+     * Remove an observer.
+     *
+     * @param observer The observer to remove.
+     */
+    public void removeObserver(SimulatorObserver observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Set the number of threads used to make the organisms act.
+     * With a parallelism of 0 they act one after another in a single
+     * sequence; with any other the field is processed stripe by stripe,
+     * which gives the same results whatever the parallelism.
+     *
+     * @param parallelism The number of threads, or 0 to act in sequence.
+     * @throws IllegalArgumentException If the parallelism is negative.
+     * @throws IllegalStateException If the field cannot be updated by several threads.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("parallelism must not be negative: " + parallelism);
+        }
+        if (parallelism > 0 && !field.supportsConcurrentRows()) {
+            throw new IllegalStateException(field.getClass().getSimpleName()
+                    + " cannot be updated by several threads");
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (parallelism > 0) {
+            pool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    /**
+     * Set how a disease runs its course in the infected, from the next
+     * step on. By default they stay infectious for life.
+     *
+     * @param model The model of the course of the disease.
+     */
+    public void setEpidemicModel(Epidemic.Model model) {
+        epidemic.setModel(model);
+    }
+
+    /**
+     * Cut the field into stripes, each with its organisms, pool and
+     * task, and the tasks acting on the stripes of each parity.
+     */
+    private void createStripes() {
+        int stripes = (field.getDepth() + STRIPE_HEIGHT - 1) / STRIPE_HEIGHT;
+        stripeOrganisms = new OrganismStore[stripes];
+        stripeFirstBorn = new int[stripes];
+        stripePools = new OrganismPool[stripes];
+        stripeRandoms = new CounterRandom[stripes];
+        stripeTasks = new ForkJoinTask<?>[stripes];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            int current = stripe;
+            stripeOrganisms[stripe] = new OrganismStore();
+            stripePools[stripe] = new OrganismPool();
+            stripeTasks[stripe] = ForkJoinTask.adapt(() -> actInStripe(current));
+        }
+        parityTasks = new ForkJoinTask<?>[2];
+        for (int parity = 0; parity < 2; parity++) {
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[(stripes + 1 - parity) / 2];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = stripeTasks[parity + 2 * i];
+            }
+            parityTasks[parity] = ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks));
+        }
+    }
+
+    /**
+     * Give the run a seed, from which all its random numbers are drawn.
+     *
+     * @param seed The seed.
+     */
+    private void setSeed(long seed) {
+        this.seed = seed;
+        random = new CounterRandom(seed);
+        for (int stripe = 0; stripe < stripeRandoms.length; stripe++) {
+            stripeRandoms[stripe] = new CounterRandom(seed);
+        }
+    }
+
+    /**
+     * Run the simulation from its current state for the given number of steps.
+     * Stop before the given number of steps if it ceases to be viable.
+     *
+     * @param numSteps The number of steps to run for.
+     */
+    public void simulate(int numSteps) {
+        for (int step = 1; step <= numSteps && isViable(); step++) {
+            simulateOneStep();
+        }
+    }
+
+    /**
+     * Run the simulation from its current state for a single step.
+     * Iterate over the whole field updating the state of each
+     * fox and rabbit.
+     */
+    public void simulateOneStep() {
+        step++;
+        environment.update(step, random);
+
+        actInStripes();
+        if (plants != null) {
+            plants.step(step, random);
+        }
+        field.stepFinished();
+        epidemic.step(step, field, random);
+        // Only now can nothing see the organisms that died.
+        for (OrganismPool stripePool : stripePools) {
+            stripePool.recycle();
+        }
+
+        notifyObservers();
+    }
+
+    /**
+     * Let all creatures act, stripe by stripe: first the even stripes,
+     * in parallel if there are threads to, then the odd ones. Each
+     * organism acts in the stripe it is in at the start of the step.
+     */
+    private void actInStripes() {
+        int dropped = 0;
+        for (Organism organism : organisms) {
+            if (organism.isAlive()) {
+                stripeOrganisms[field.rowOf(organism.getCell()) / STRIPE_HEIGHT].add(organism);
+            } else {
+                // Organisms killed since they last acted are dropped here,
+                // and shared out between the stripes to be born again.
+                stripePools[dropped++ % stripePools.length].retire(organism);
+            }
+        }
+        if (pool != null) {
+            for (ForkJoinTask<?> parityTask : parityTasks) {
+                for (ForkJoinTask<?> stripeTask : stripeTasks) {
+                    stripeTask.reinitialize();
+                }
+                parityTask.reinitialize();
+                pool.invoke(parityTask);
+            }
+        } else {
+            for (int parity = 0; parity < 2; parity++) {
+                for (int stripe = parity; stripe < stripeOrganisms.length; stripe += 2) {
+                    actInStripe(stripe);
+                }
+            }
+        }
+
+        // Gather the survivors and the newborns, in stripe order, and
+        // follow the newborns that are infected.
+        organisms.clear();
+        for (int stripe = 0; stripe < stripeOrganisms.length; stripe++) {
+            OrganismStore store = stripeOrganisms[stripe];
+            for (int i = stripeFirstBorn[stripe]; i < store.size(); i++) {
+                if (store.get(i).isInfected()) {
+                    epidemic.add(store.get(i));
+                }
+            }
+            organisms.addAll(store);
+            store.clear();
+            stripeFirstBorn[stripe] = 0;
+        }
+    }
+
+    /**
+     * Let the creatures of one stripe act, removing those that die and
+     * adding those born after them.
+     *
+     * @param stripe The stripe.
+     */
+    private void actInStripe(int stripe) {
+        RandomGenerator previous = Randomizer.bind(stripeRandoms[stripe]);
+        OrganismPool.bind(stripePools[stripe]);
+        try {
+            stripeFirstBorn[stripe] = stripeOrganisms[stripe].act(step, stripePools[stripe], stripeRandoms[stripe]);
+        } finally {
+            OrganismPool.unbind();
+            Randomizer.bind(previous);
+        }
+    }
+
+    /**
+     * Reset the simulation to a starting position, with a new seed drawn
+     * from the generator provided to the current thread (see Randomizer).
+     */
+    public void reset() {
+        setSeed(Randomizer.getRandom().nextLong());
+        step = 0;
+        environment.reset(random);
+        organisms.clear();
+        populate();
+        followInfected();
+        field.stepFinished();
+
+        // Show the starting state to the observers.
+        notifyObservers();
+    }
+
+    /**
+     * Capture the state of the simulation, to be saved and later given
+     * to restore. Only the capture happens here; the checkpoint can be
+     * written out on another thread while the simulation runs on.
+     *
+     * @return The checkpoint.
+     */
+    public Checkpoint checkpoint() {
+        int size = organisms.size() + (plants == null ? 0 : field.getPopulation(plants.getCode()));
+        long[] cells = new long[size];
+        long[] states = new long[size];
+        long[] ids = new long[size];
+        int count = 0;
+        for (Organism organism : organisms) {
+            // Organisms killed since they last acted are dropped here.
+            if (organism.isAlive()) {
+                cells[count] = organism.getCell();
+                states[count] = organism.packState();
+                ids[count] = organism.getId();
+                count++;
+            }
+        }
+        if (plants != null) {
+            // The plants of a layer follow, in cell order, with no ids.
+            for (long cell = plants.nextPlant(0); cell >= 0; cell = plants.nextPlant(cell + 1)) {
+                cells[count] = cell;
+                states[count] = Organism.packState(plants.getCode(), false, plants.isInfected(cell),
+                        plants.getAge(cell));
+                ids[count] = -1;
+                count++;
+            }
+        }
+        return new Checkpoint(field.getDepth(), field.getWidth(), step, environment.isNight(),
+                environment.isRaining(), environment.getRainTime(),
+                seed, true, Checkpoint.registeredSpecies(),
+                Arrays.copyOf(cells, count), Arrays.copyOf(states, count), Arrays.copyOf(ids, count));
+    }
+
+    /**
+     * Put the simulation back in the state of a checkpoint, so that it
+     * carries on exactly as the simulation the checkpoint was taken from.
+     *
+     * @param checkpoint The checkpoint.
+     * @throws IllegalArgumentException If the checkpoint is of a field of
+     *         different size or of other species, or was saved before
+     *         the seed of the run was.
+     */
+    public void restore(Checkpoint checkpoint) {
+        if (checkpoint.depth != field.getDepth() || checkpoint.width != field.getWidth()) {
+            throw new IllegalArgumentException("the checkpoint is of a " + checkpoint.depth + "x"
+                    + checkpoint.width + " field");
+        }
+        if (!Arrays.equals(checkpoint.species, Checkpoint.registeredSpecies())) {
+            throw new IllegalArgumentException("the checkpoint has other species: "
+                    + Arrays.toString(checkpoint.species));
+        }
+        if (!checkpoint.hasSeed) {
+            throw new IllegalArgumentException("the checkpoint was saved with an older random generator;"
+                    + " it can be replayed from but not resumed");
+        }
+        setSeed(checkpoint.seed);
+        // Plants read their age off the rain clocks, so the weather comes first.
+        environment.restore(random, checkpoint.step, checkpoint.isNight, checkpoint.isRaining,
+                checkpoint.rainTime);
+        Constructor<?>[] constructors = new Constructor<?>[checkpoint.species.length + 1];
+        organisms.clear();
+        field.clear();
+        if (plants != null) {
+            plants.clear();
+        }
+        // Creating an organism may draw numbers, which are then put right.
+        RandomGenerator previous = Randomizer.bind(random);
+        try {
+            for (int i = 0; i < checkpoint.cells.length; i++) {
+                long state = checkpoint.states[i];
+                if (plants != null && Organism.speciesOf(state) == plants.getCode()) {
+                    plants.restore(checkpoint.cells[i], Organism.ageOf(state), Organism.isInfectedIn(state));
+                    continue;
+                }
+                Organism organism = recreate(field, checkpoint.cells[i], state, constructors);
+                // Plants saved from a plant layer have no ids.
+                if (checkpoint.ids != null && checkpoint.ids[i] >= 0) {
+                    organism.restoreId(checkpoint.ids[i]);
+                }
+                organism.setListener(listener);
+                organisms.add(organism);
+            }
+        } finally {
+            Randomizer.bind(previous);
+        }
+        followInfected();
+        field.stepFinished();
+        step = checkpoint.step;
+        notifyObservers();
+    }
+
+    /**
+     * Create an organism in a cell of a field from its packed state.
+     *
+     * @param field The field.
+     * @param cell The cell.
+     * @param state The packed state (see Organism.packState).
+     * @param constructors The constructors found so far, by species code.
+     * @return The organism.
+     * @throws IllegalStateException If the species cannot be created.
+     */
+    static Organism recreate(Field field, long cell, long state, Constructor<?>[] constructors) {
+        int code = Organism.speciesOf(state);
+        try {
+            if (constructors[code] == null) {
+                // Every species has a constructor taking whether the age is
+                // random, the field, the cell and the sex.
+                constructors[code] = SpeciesRegistry.classOf(code)
+                        .getConstructor(boolean.class, Field.class, long.class, boolean.class);
+            }
+            // The sex and age are put right by restoreState.
+            Organism organism = (Organism) constructors[code].newInstance(false, field, cell, false);
+            organism.restoreState(state);
+            return organism;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot create species " + code, e);
+        }
+    }
+
+    /**
+     * Follow the infected organisms afresh, in the order they act.
+     */
+    private void followInfected() {
+        epidemic.clear();
+        for (Organism organism : organisms) {
+            if (organism.isInfected()) {
+                epidemic.add(organism);
+            }
+        }
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     *
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable() {
+        return stats.isViable(field);
+    }
+
+    /**
+     * @return The field being simulated.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * @return The number of organisms alive, counting the plants of a
+     *         plant layer.
+     */
+    public int getOrganismCount() {
+        return organisms.size() + (plants == null ? 0 : field.getPopulation(plants.getCode()));
+    }
+
+    /**
+     * Tell every observer about the current state.
+     */
+    private void notifyObservers() {
+        for (SimulatorObserver observer : observers) {
+            observer.stepCompleted(step, field, environment.isNight(), environment.isRaining());
+        }
+    }
+
+    /**
+     * Randomly populate the field with foxes and rabbits.
+     */
+    private void populate() {
+        field.clear();
+        if (plants != null) {
+            plants.clear();
+        }
+        // The organisms' constructors draw from the generator too.
+        RandomGenerator previous = Randomizer.bind(random);
+        try {
+            for (int row = 0; row < field.getDepth(); row++) {
+                for (int col = 0; col < field.getWidth(); col++) {
+                    long cell = field.indexOf(row, col);
+                    random.at(0, cell, CounterRandom.POPULATE);
+                    boolean isMale = random.nextBoolean();
+                    if (random.nextDouble() <= FOX_CREATION_PROBABILITY) {
+                        Leopard leopard = new Leopard(true, field, cell, isMale);
+                        organisms.add(leopard);
+                    } else if (random.nextDouble() <= RABBIT_CREATION_PROBABILITY) {
+                        Organism rabbit = new Capybara(true, field, cell, isMale);
+                        organisms.add(rabbit);
+                    } else if (random.nextDouble() <= DEER_CREATION_PROBABILITY) {
+                        Organism deer = new Deer(true, field, cell, isMale);
+                        organisms.add(deer);
+                    } else if (random.nextDouble() <= TIGER_CREATION_PROBABILITY) {
+                        Organism tiger = new Tiger(true, field, cell, isMale);
+                        organisms.add(tiger);
+                    } else if (random.nextDouble() <= RAT_CREATION_PROBABILITY) {
+                        Organism rat = new Rat(true, field, cell, isMale);
+                        organisms.add(rat);
+                    } else if(random.nextDouble() <= PLANT_CREATION_PROBABILITY) {
+                        if (plants != null) {
+                            plants.plant(cell, true);
+                        } else {
+                            Organism plant = new Plant(true, field, cell, isMale);
+                            organisms.add(plant);
+                        }
+                    }
+                    // else leave the location empty.
+                }
+            }
+        } finally {
+            Randomizer.bind(previous);
+        }
+        for (Organism organism : organisms) {
+            organism.setListener(listener);
+        }
+    }
+}
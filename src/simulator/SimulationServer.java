@@ -0,0 +1,270 @@
+package simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import field.Field;
+import field.SpeciesRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a simulation on a thread of its own and lets it be watched and
+ * controlled over HTTP on the local machine, using the JDK's built-in
+ * server. The endpoints are:
+ *
+ *   /start, /pause, /step, /reset   control the simulation
+ *   /counts                         the population of each species (JSON)
+ *   /metrics                        steps per second and step latencies (JSON)
+ *   /snapshot                       the species in every cell (binary, see below)
+ *
+ * Control requests only queue a command for the simulation thread and
+ * return at once. Every read is answered from the latest snapshot, which
+ * the simulation thread publishes after a reset, a pause or a single step,
+ * and otherwise at most every PUBLISH_INTERVAL milliseconds while it runs.
+ * The simulation thread never waits for a request.
+ *
+ * The binary snapshot is big endian: the magic "SNAP", a version, the
+ * depth and width as ints, the step as a long, then one byte per cell,
+ * row by row, holding the species code (0 for an empty cell). Fields
+ * of more than MAX_SNAPSHOT_CELLS cells are sent without the cells.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class SimulationServer {
+    // The most time between snapshots while running, in milliseconds.
+    private static final long PUBLISH_INTERVAL = 250;
+    // The number of recent steps whose latencies are kept.
+    private static final int LATENCY_WINDOW = 1024;
+    // How long the simulation thread sleeps when there is nothing to do.
+    private static final long IDLE_NANOS = 20_000_000;
+    // The most cells a binary snapshot holds; larger fields are sent without cells.
+    private static final long MAX_SNAPSHOT_CELLS = 1 << 26;
+    // The start of a binary snapshot, and its version.
+    private static final int SNAPSHOT_MAGIC = 0x534E4150;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // The simulation, used by the simulation thread only.
+    private final SimulationEngine engine;
+    // Commands waiting for the simulation thread.
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    // The latest published state.
+    private volatile Snapshot snapshot;
+    // The HTTP server and the simulation thread.
+    private HttpServer server;
+    private Thread simulationThread;
+    private volatile boolean stopped;
+
+    // State kept by the simulation thread.
+    private boolean running;
+    private int stepsRequested;
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long stepsTimed;
+    private long lastPublished;
+    private long stepsAtPublish;
+
+    /**
+     * Create a server for the given simulation. Nothing runs until
+     * start is called.
+     *
+     * @param engine The simulation to serve.
+     */
+    public SimulationServer(SimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Start the simulation thread and listen on the given port of the
+     * loopback interface. The simulation starts paused.
+     *
+     * @param port The port, or 0 for any free port.
+     * @return The port being listened on.
+     * @throws IOException If the server cannot listen on the port.
+     */
+    public int start(int port) throws IOException {
+        publish();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/start", exchange -> control(exchange, () -> running = true));
+        server.createContext("/pause", exchange -> control(exchange, () -> {
+            running = false;
+            publish();
+        }));
+        server.createContext("/step", exchange -> control(exchange, () -> stepsRequested++));
+        server.createContext("/reset", exchange -> control(exchange, () -> {
+            running = false;
+            stepsRequested = 0;
+            engine.reset();
+            stepsTimed = 0;
+            stepsAtPublish = 0;
+            publish();
+        }));
+        server.createContext("/counts", exchange -> reply(exchange, "application/json", countsJson(snapshot)));
+        server.createContext("/metrics", exchange -> reply(exchange, "application/json", metricsJson(snapshot)));
+        server.createContext("/snapshot", exchange -> reply(exchange, "application/octet-stream",
+                snapshotBytes(snapshot)));
+        server.start();
+
+        simulationThread = new Thread(this::simulate, "simulation");
+        simulationThread.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop the server and the simulation thread.
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(simulationThread);
+        server.stop(0);
+    }
+
+    /**
+     * The loop of the simulation thread: carry out any commands, then
+     * take a step if running or asked to, publishing as needed.
+     */
+    private void simulate() {
+        while (!stopped) {
+            for (Runnable command = commands.poll(); command != null; command = commands.poll()) {
+                command.run();
+            }
+            if (running || stepsRequested > 0) {
+                long start = System.nanoTime();
+                engine.simulateOneStep();
+                latencies[(int) (stepsTimed++ % LATENCY_WINDOW)] = System.nanoTime() - start;
+                if (!engine.isViable()) {
+                    running = false;
+                }
+                if (stepsRequested > 0) {
+                    stepsRequested--;
+                    publish();
+                } else if (!running || System.currentTimeMillis() - lastPublished >= PUBLISH_INTERVAL) {
+                    publish();
+                }
+            } else {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Capture the state of the simulation and make it the one requests
+     * are answered from. Called on the simulation thread.
+     */
+    private void publish() {
+        long now = System.currentTimeMillis();
+        Field field = engine.getField();
+        int species = SimulationEngine.getSpeciesCount();
+        int[] counts = new int[species + 1];
+        for (int code = 1; code <= species; code++) {
+            counts[code] = field.getPopulation(code);
+        }
+        byte[] cells = new byte[field.getSize() <= MAX_SNAPSHOT_CELLS ? (int) field.getSize() : 0];
+        for (int index = 0; index < cells.length; index++) {
+            cells[index] = (byte) field.getSpeciesAt(index);
+        }
+        int timed = (int) Math.min(stepsTimed, LATENCY_WINDOW);
+        long[] recent = Arrays.copyOf(latencies, timed);
+        Arrays.sort(recent);
+        double rate = lastPublished == 0 || now == lastPublished ? 0
+                : (stepsTimed - stepsAtPublish) * 1000.0 / (now - lastPublished);
+        snapshot = new Snapshot(engine.getStep(), running, field.getDepth(), field.getWidth(),
+                counts, cells, rate, recent);
+        lastPublished = now;
+        stepsAtPublish = stepsTimed;
+    }
+
+    /**
+     * Queue a command for the simulation thread and answer at once.
+     */
+    private void control(HttpExchange exchange, Runnable command) throws IOException {
+        commands.add(command);
+        LockSupport.unpark(simulationThread);
+        reply(exchange, "application/json", "{\"queued\":true}");
+    }
+
+    private static void reply(HttpExchange exchange, String type, String body) throws IOException {
+        reply(exchange, type, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void reply(HttpExchange exchange, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String countsJson(Snapshot shot) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"step\":").append(shot.step).append(",\"running\":").append(shot.running)
+                .append(",\"counts\":{");
+        for (int code = 1; code < shot.counts.length; code++) {
+            if (code > 1) {
+                json.append(',');
+            }
+            json.append('"').append(SpeciesRegistry.classOf(code).getSimpleName()).append("\":")
+                    .append(shot.counts[code]);
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String metricsJson(Snapshot shot) {
+        return String.format("{\"step\":%d,\"stepsPerSecond\":%.2f,\"latencyMillis\":"
+                        + "{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f},\"window\":%d}",
+                shot.step, shot.stepsPerSecond, shot.latency(0.5), shot.latency(0.9),
+                shot.latency(0.99), shot.latency(1), shot.latencies.length);
+    }
+
+    private static byte[] snapshotBytes(Snapshot shot) {
+        ByteBuffer buffer = ByteBuffer.allocate(24 + shot.cells.length);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(shot.depth).putInt(shot.width)
+                .putLong(shot.step).put(shot.cells);
+        return buffer.array();
+    }
+
+    /**
+     * The state of the simulation at one moment. Never changed once
+     * published.
+     */
+    private static class Snapshot {
+        final int step;
+        final boolean running;
+        final int depth, width;
+        final int[] counts;
+        final byte[] cells;
+        final double stepsPerSecond;
+        // The latencies of recent steps in nanoseconds, sorted.
+        final long[] latencies;
+
+        Snapshot(int step, boolean running, int depth, int width, int[] counts, byte[] cells,
+                 double stepsPerSecond, long[] latencies) {
+            this.step = step;
+            this.running = running;
+            this.depth = depth;
+            this.width = width;
+            this.counts = counts;
+            this.cells = cells;
+            this.stepsPerSecond = stepsPerSecond;
+            this.latencies = latencies;
+        }
+
+        /**
+         * @return The latency at the given quantile in milliseconds, or 0 if none.
+         */
+        double latency(double q) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            return latencies[(int) Math.round(q * (latencies.length - 1))] / 1e6;
+        }
+    }
+}
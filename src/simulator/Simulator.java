@@ -5,20 +5,18 @@ import animals.prey.day_eaters.Deer;
 import animals.prey.Plant;
 import animals.prey.day_eaters.Capybara;
 import animals.prey.Rat;
-import field.Field;
-import field.Location;
-import utils.Randomizer;
+import field.GridField;
 
-import java.util.Random;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.awt.Color;
 
 /**
  * A simple predator-prey simulator, based on a rectangular field
  * containing Tigers, Leopards, Rats, Plants, Capybaras and Deers.
  *
+ * The simulation itself is run by a SimulationEngine; this class
+ * attaches a graphical view to it. Use the engine directly to run
+ * without a display.
+ *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29 (2)
  */
@@ -28,32 +26,11 @@ public class Simulator {
     private static final int DEFAULT_WIDTH = 120;
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 80;
-    // The probability that a fox will be created in any given grid position.
-    private static final double FOX_CREATION_PROBABILITY = 0.05;
-    // The probability that a rabbit will be created in any given grid position.
-    private static final double RABBIT_CREATION_PROBABILITY = 0.06;
-    // The probability that a deer will be created in any given grid position.
-    private static final double DEER_CREATION_PROBABILITY = 0.06;
-    // The probability that a tiger will be created in any given grid position.
-    private static final double TIGER_CREATION_PROBABILITY = 0.04;
-    // The probability that a tiger will be created in any given grid position.
-    private static final double RAT_CREATION_PROBABILITY = 0.15;
-    // The probability that a plant will be created in any given grid position.
-    private static final double PLANT_CREATION_PROBABILITY = 0.1;
-    // List of animals in the field.
-    private List<Organism> organisms;
-    // The current state of the field.
-    private Field field;
-    // The current step of the simulation.
-    private int step;
+    // The simulation being shown.
+    private SimulationEngine engine;
     // A graphical view of the simulation.
     private SimulatorView view;
-    // Random object
-    private Random rand = Randomizer.getRandom();
-    // Boolean value which indicates the current state of the time
-    private boolean isNight;
-    private boolean isRaining;
-    private int rainTime;
+
     /**
      * Construct a simulation field with default size.
      */
@@ -75,8 +52,7 @@ public class Simulator {
             width = DEFAULT_WIDTH;
         }
 
-        organisms = new ArrayList<>();
-        field = new Field(depth, width);
+        engine = new SimulationEngine(new GridField(depth, width));
 
         // Create a view of the state of each location in the field.
         view = new SimulatorView(depth, width);
@@ -86,11 +62,7 @@ public class Simulator {
         view.setColor(Leopard.class, Color.RED);
         view.setColor(Tiger.class, Color.ORANGE);
         view.setColor(Plant.class, Color.GREEN);
-
-        isNight = false;
-        rainTime = 15;
-        // Setup a valid starting point.
-        reset();
+        engine.addObserver(view);
     }
 
     /**
@@ -108,7 +80,7 @@ public class Simulator {
      * @param numSteps The number of steps to run for.
      */
     public void simulate(int numSteps) {
-        for (int step = 1; step <= numSteps && view.isViable(field); step++) {
+        for (int step = 1; step <= numSteps && engine.isViable(); step++) {
             simulateOneStep();
 //            delay(500);   // uncomment this to run more slowly
         }
@@ -116,105 +88,23 @@ public class Simulator {
 
     /**
      * Run the simulation from its current state for a single step.
-     * Iterate over the whole field updating the state of each
-     * fox and rabbit.
      */
     public void simulateOneStep() {
-        step++;
-
-        // Provide space for newborn organisms.
-        List<Organism> newOrganisms = new ArrayList<>();
-
-        // On every 20th run change the day time
-        if (step % 20 == 0) {
-            isNight = !isNight;
-            view.setNight(isNight);
-        }
-        // Rains for given raintime
-        if (step % rainTime == 0){
-            isRaining = !isRaining;
-            if (!isRaining) {
-                do {
-                    // rain time is random
-                    rainTime = rand.nextInt(15);
-                }
-                while (rainTime == 0);// prevents zero division error
-            }
-        }
-
-        // Display is raining message.
-        if (isRaining) {
-            view.setInfoText("RAINING!");
-        }
-        // Set to null when weather is normal.
-        else
-            view.setInfoText("");
-        // Let all creatures act.
-        for (Iterator<Organism> it = organisms.iterator(); it.hasNext(); ) {
-            Organism organism = it.next();
-
-            organism.setDayTime(isNight);
-            organism.setRain(isRaining);
-            organism.act(newOrganisms);
-            if (!organism.isAlive()) {
-                it.remove();
-            }
-        }
-
-        // Add the newly born foxes and rabbits to the main lists.
-        organisms.addAll(newOrganisms);
-
-        view.showStatus(step, field);
+        engine.simulateOneStep();
     }
 
     /**
      * Reset the simulation to a starting position.
      */
     public void reset() {
-        step = 0;
-        organisms.clear();
-        populate();
-
-        // Show the starting state in the view.
-        view.showStatus(step, field);
+        engine.reset();
     }
 
     /**
-     * Randomly populate the field with foxes and rabbits.
+     * @return The simulation being shown.
      */
-    private void populate() {
-        field.clear();
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                boolean isMale = rand.nextBoolean();
-                if (rand.nextDouble() <= FOX_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Leopard leopard = new Leopard(true, field, location, isMale);
-                    organisms.add(leopard);
-                } else if (rand.nextDouble() <= RABBIT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Organism rabbit = new Capybara(true, field, location, isMale);
-                    organisms.add(rabbit);
-                } else if (rand.nextDouble() <= DEER_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Organism deer = new Deer(true, field, location, isMale);
-                    organisms.add(deer);
-                } else if (rand.nextDouble() <= TIGER_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Organism tiger = new Tiger(true, field, location, isMale);
-                    organisms.add(tiger);
-                } else if (rand.nextDouble() <= RAT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Organism rat = new Rat(true, field, location, isMale);
-                    organisms.add(rat);
-                } else if(rand.nextDouble() <= PLANT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Organism plant = new Plant(true, field, location, isMale);
-                    organisms.add(plant);
-                }
-                // else leave the location empty.
-            }
-        }
+    public SimulationEngine getEngine() {
+        return engine;
     }
 
     /**
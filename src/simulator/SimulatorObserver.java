@@ -0,0 +1,26 @@
+package simulator;
+
+import field.Field;
+
+/**
+ * Something that wants to hear about the progress of a simulation,
+ * such as a graphical view or a log of the population counts.
+ * Observers are told about the state of the field after the
+ * simulation has been reset and after every step.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public interface SimulatorObserver {
+    /**
+     * Called when a step of the simulation has been completed.
+     * Step 0 is the starting state, after a reset.
+     *
+     * @param step The number of the step.
+     * @param field The field at the end of the step.
+     * @param isNight Whether it is night.
+     * @param isRaining Whether it is raining anywhere on the field; the
+     *                  weather of each cell is in the field's Environment.
+     */
+    void stepCompleted(int step, Field field, boolean isNight, boolean isRaining);
+}
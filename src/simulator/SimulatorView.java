@@ -2,11 +2,10 @@ package simulator;
 
 import field.Field;
 import field.FieldStats;
+import field.SpeciesRegistry;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 /**
  * A graphical view of the simulation grid.
@@ -15,10 +14,12 @@ import java.util.Map;
  * Colors for each type of species can be defined using the
  * setColor method.
  * 
+ * The view follows a SimulationEngine as one of its observers.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
-public class SimulatorView extends JFrame
+public class SimulatorView extends JFrame implements SimulatorObserver
 {
     // Colors used for empty locations.
     private static final Color EMPTY_COLOR = Color.white;
@@ -34,8 +35,8 @@ public class SimulatorView extends JFrame
     private JLabel stepLabel, population, infoLabel;
     private FieldView fieldView;
     
-    // A map for storing colors for participants in the simulation
-    private Map<Class, Color> colors;
+    // The colors of the participants, indexed by species code
+    private Color[] speciesColors;
     // A statistics object computing and storing simulation information
     private FieldStats stats;
 
@@ -50,7 +51,7 @@ public class SimulatorView extends JFrame
     public SimulatorView(int height, int width)
     {
         stats = new FieldStats();
-        colors = new LinkedHashMap<>();
+        speciesColors = new Color[SpeciesRegistry.MAX_SPECIES + 1];
 
         setTitle("Fox and Rabbit Simulation");
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
@@ -81,7 +82,7 @@ public class SimulatorView extends JFrame
      */
     public void setColor(Class animalClass, Color color)
     {
-        colors.put(animalClass, color);
+        speciesColors[SpeciesRegistry.codeOf(animalClass)] = color;
     }
 
     /**
@@ -93,18 +94,16 @@ public class SimulatorView extends JFrame
     }
 
     /**
-     * @return The color to be used for a given class of animal.
+     * @return The color to be used for a given species code.
      */
-    private Color getColor(Class animalClass)
+    private Color getColor(int code)
     {
-        Color col = colors.get(animalClass);
+        Color col = speciesColors[code];
         if(col == null) {
-            // no color defined for this class
+            // no color defined for this species
             return UNKNOWN_COLOR;
         }
-        else {
-            return col;
-        }
+        return col;
     }
 
     /**
@@ -119,28 +118,42 @@ public class SimulatorView extends JFrame
         }
             
         stepLabel.setText(STEP_PREFIX + step);
-        stats.reset();
         
         fieldView.preparePaint();
 
+        long index = 0;
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
+                int code = field.getSpeciesAt(index++);
+                if(code != SpeciesRegistry.EMPTY) {
+                    fieldView.drawMark(col, row, getColor(code));
                 }
                 else {
                     fieldView.drawMark(col, row, currentColor);
                 }
             }
         }
-        stats.countFinished();
 
         population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
         fieldView.repaint();
     }
 
+    /**
+     * Show the state of the simulation at the end of a step.
+     * @param step Which iteration step it is.
+     * @param field The field whose status is to be displayed.
+     * @param isNight Whether it is night.
+     * @param isRaining Whether it is raining.
+     */
+    @Override
+    public void stepCompleted(int step, Field field, boolean isNight, boolean isRaining)
+    {
+        setNight(isNight);
+        // Display is raining message, cleared when weather is normal.
+        setInfoText(isRaining ? "RAINING!" : "");
+        showStatus(step, field);
+    }
+
     public void setNight(boolean night) {
         if (night)
             currentColor = NIGHT_COLOR;
@@ -0,0 +1,92 @@
+package utils;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A random generator with no state of its own to speak of: each number
+ * it gives is a hash of the seed of the run, a step, a cell, a purpose
+ * and how many numbers have been drawn since it was put at that place
+ * (see at). What an organism draws while it acts therefore depends only
+ * on where and when it acts, and not on which organisms acted before it
+ * or on which thread, and nothing need be saved to carry on a run but
+ * the seed.
+ *
+ * A generator is not safe for use by several threads at once; each
+ * thread has its own, all with the same seed.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class CounterRandom implements RandomGenerator
+{
+    // The purposes numbers are drawn for.
+    public static final int ACT = 1;
+    public static final int POPULATE = 2;
+    public static final int WEATHER = 3;
+    public static final int PLANTS = 4;
+    public static final int TERRAIN = 5;
+    public static final int STORMS = 6;
+    public static final int EPIDEMIC = 7;
+    // The odd number the count is multiplied by before hashing.
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    // The seed of the run.
+    private final long seed;
+    // The hash of the seed, step, cell and purpose, and the count of
+    // numbers drawn since.
+    private long key;
+    private long count;
+
+    /**
+     * Create a generator for a run.
+     * @param seed The seed of the run.
+     */
+    public CounterRandom(long seed)
+    {
+        this.seed = seed;
+        at(0, -1, 0);
+    }
+
+    /**
+     * @return The seed of the run.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Start drawing the numbers for a purpose at a cell in a step.
+     * @param step The step.
+     * @param cell The index of the cell, or -1 for none.
+     * @param purpose What the numbers are for.
+     * @return This generator.
+     */
+    public CounterRandom at(long step, long cell, int purpose)
+    {
+        key = mix(mix(mix(seed ^ purpose) + step) + cell);
+        count = 0;
+        return this;
+    }
+
+    /**
+     * @return The next 64 random bits.
+     */
+    @Override
+    public long nextLong()
+    {
+        return mix(key + GAMMA * ++count);
+    }
+
+    /**
+     * Scramble a number (the finalizer of SplitMix64).
+     * @param value The number to scramble.
+     * @return The scrambled number.
+     */
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,81 @@
+package utils;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A fast random generator (SplitMix64) whose state is a single number
+ * that can be read and put back, so that a simulation saved part way
+ * through can carry on exactly as it would have. Simulations draw from
+ * a CounterRandom once they are running; streams give the numbers drawn
+ * outside them, such as the seed of each run (see Randomizer).
+ *
+ * A stream is not safe for use by several threads at once, and takes no
+ * lock: each thread is meant to have its own.
+ *
+ * @author Andrian Stoykov, Pushkar Garg, Jonathan Rivera
+ * @version 2020.02.28
+ */
+public class RandomStream implements RandomGenerator
+{
+    // The odd number added to the state for each number drawn.
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    // The state, advanced by GAMMA for each number drawn.
+    private long state;
+
+    /**
+     * Create a stream with the given seed.
+     * @param seed The seed.
+     */
+    public RandomStream(long seed)
+    {
+        state = seed;
+    }
+
+    /**
+     * Start the stream again from the given seed.
+     * @param seed The seed.
+     */
+    public void setSeed(long seed)
+    {
+        state = seed;
+    }
+
+    /**
+     * @return The state of the stream, to be given to setState.
+     */
+    public long getState()
+    {
+        return state;
+    }
+
+    /**
+     * Put the stream back in a state returned by getState.
+     * @param state The state.
+     */
+    public void setState(long state)
+    {
+        this.state = state;
+    }
+
+    /**
+     * @return The next 64 random bits.
+     */
+    @Override
+    public long nextLong()
+    {
+        return mix(state += GAMMA);
+    }
+
+    /**
+     * Scramble a number (the finalizer of SplitMix64).
+     * @param z The number to scramble.
+     * @return The scrambled number.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,12 +1,23 @@
 package utils;
 
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
  * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
  * 'useShared' to false to get different random behaviour every time.
  * 
+ * The shared generator is a RandomStream, seeded once per run. It takes
+ * no lock, so it must only be used by one thread at a time: a thread
+ * simulating at the same time as others binds a generator of its own,
+ * such as a CounterRandom, which is then provided to that thread
+ * instead. Threads simulating parts of the field at the same time
+ * use this to stay repeatable, and to not contend for one generator.
+ * 
+ * The shared generator's state can be saved and put back (see
+ * RandomStream), so that a saved simulation can be resumed.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
@@ -14,10 +25,12 @@ public class Randomizer
 {
     // The default seed for control of randomization.
     private static final int SEED = 1111;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
+    // A shared generator, if required.
+    private static final RandomStream rand = new RandomStream(SEED);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // Generators bound to particular threads.
+    private static final ThreadLocal<RandomGenerator> bound = new ThreadLocal<>();
 
     /**
      * Constructor for objects of class Randomizer
@@ -28,10 +41,14 @@ public class Randomizer
 
     /**
      * Provide a random generator.
-     * @return A random object.
+     * @return A random generator.
      */
-    public static Random getRandom()
+    public static RandomGenerator getRandom()
     {
+        RandomGenerator threadRandom = bound.get();
+        if(threadRandom != null) {
+            return threadRandom;
+        }
         if(useShared) {
             return rand;
         }
@@ -51,4 +68,45 @@ public class Randomizer
             rand.setSeed(SEED);
         }
     }
+
+    /**
+     * Reset the randomization with a different seed, so that a
+     * run can be repeated or varied from outside.
+     * This will have no effect if randomization is not through
+     * a shared Random generator.
+     * @param seed The seed to use.
+     */
+    public static void reset(long seed)
+    {
+        if(useShared) {
+            rand.setSeed(seed);
+        }
+    }
+
+    /**
+     * Provide the given generator to the current thread until unbind
+     * is called.
+     * @param random The generator to provide, or null to unbind.
+     * @return The generator bound before, or null if there was none,
+     *         to be bound again when done.
+     */
+    public static RandomGenerator bind(RandomGenerator random)
+    {
+        RandomGenerator previous = bound.get();
+        if(random == null) {
+            bound.remove();
+        }
+        else {
+            bound.set(random);
+        }
+        return previous;
+    }
+
+    /**
+     * Go back to providing the usual generator to the current thread.
+     */
+    public static void unbind()
+    {
+        bound.remove();
+    }
 }